@@ -0,0 +1,226 @@
+import java.util.Arrays;
+
+// Same contract as Percolation, in a fraction of the memory.
+//
+// Percolation needs two full WeightedQuickUnionUFs (two int arrays each) plus a
+// boolean per site, and the second union-find only exists to stop backwash.
+// Here there's a single union-find with path compression, and instead of dummy
+// top and bottom sites each root carries "touches top" and "touches bottom"
+// flags.  A site is full when its root touches the top, and the system
+// percolates once some root touches both -- a bottom flag never makes anything
+// full, so there's no backwash to prevent.
+//
+// Per site that's one int of parent, one byte holding the rank and the two
+// flags, and one bit in a long[] of open sites: a little over 5 bytes, against
+// about 17 for Percolation.
+//
+// The order sites are stored in is a SiteLayout, row-major unless another one
+// is given to the constructor.
+public class CompactPercolation {
+
+    // Layout of a meta byte: the low 5 bits are the rank (union by rank keeps
+    // it under log2(n*n) < 32), then the two flags.
+    private static final int RANK_MASK = 0x1f;
+    private static final byte TOP = 0x20;
+    private static final byte BOTTOM = 0x40;
+
+    private final int n;
+    private final SiteLayout layout;
+    private final int[] parent;
+    private final byte[] meta;
+    private final long[] open;      // Bitset of open sites, by slot.
+    private int openCount;
+    private boolean percolates;
+
+    // Scratch for newlyFull(), allocated on first use.
+    private long[] lastFull;
+    private long[] nowFull;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public CompactPercolation(int n) {
+        this(SiteLayout.rowMajor(n));
+    }
+
+    // creates a grid with the size and memory layout of layout, with all sites
+    // initially blocked
+    public CompactPercolation(SiteLayout layout) {
+        this.n = layout.side();
+        this.layout = layout;
+        int slots = layout.capacity();
+
+        parent = new int[slots];
+        meta = new byte[slots];
+        open = new long[(slots + 63) >>> 6];
+
+        for (int i = 0; i < slots; i++) {
+            parent[i] = i;
+        }
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(int row, int col) {
+        validate(row, col);
+
+        openSite(row - 1, col - 1);
+    }
+
+    // Opens the sites siteIds[from..to) in that order, stopping as soon as the
+    // system percolates.  Works like Percolation.openInOrder().
+    public int openInOrder(int[] siteIds, int from, int to) {
+        if (from < 0 || to > siteIds.length || from > to)
+            throw new IllegalArgumentException("Invalid range");
+
+        int k = from;
+
+        while (k < to && !percolates) {
+            int id = siteIds[k++];
+            if (id < 0 || id >= n * n)
+                throw new IllegalArgumentException("Invalid site id: " + id);
+
+            openSite(id / n, id % n);
+        }
+
+        return k;
+    }
+
+    // Opens the site at i, j (zero-based) if it isn't already.
+    private void openSite(int i, int j) {
+        int site = layout.index(i, j);
+        if (isOpenSite(site))
+            return;
+
+        open[site >>> 6] |= 1L << site;
+        ++openCount;
+
+        if (i == 0)
+            meta[site] |= TOP;
+        if (i == n - 1)
+            meta[site] |= BOTTOM;
+
+        if (i > 0)
+            unionIfOpen(site, layout.index(i - 1, j));
+        if (i < n - 1)
+            unionIfOpen(site, layout.index(i + 1, j));
+        if (j > 0)
+            unionIfOpen(site, layout.index(i, j - 1));
+        if (j < n - 1)
+            unionIfOpen(site, layout.index(i, j + 1));
+
+        if ((meta[find(site)] & (TOP | BOTTOM)) == (TOP | BOTTOM))
+            percolates = true;
+    }
+
+    private void unionIfOpen(int site, int neighbour) {
+        if (isOpenSite(neighbour))
+            union(site, neighbour);
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b)
+            return;
+
+        int rankA = meta[a] & RANK_MASK;
+        int rankB = meta[b] & RANK_MASK;
+
+        // Make a the root that survives.
+        if (rankA < rankB) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        parent[b] = a;
+        int flags = (meta[a] | meta[b]) & (TOP | BOTTOM);
+        int rank = meta[a] & RANK_MASK;
+        if (rankA == rankB)
+            ++rank;
+        meta[a] = (byte) (flags | rank);
+    }
+
+    private int find(int site) {
+        while (parent[site] != site) {
+            parent[site] = parent[parent[site]];    // Path halving.
+            site = parent[site];
+        }
+        return site;
+    }
+
+    private boolean isOpenSite(int site) {
+        return (open[site >>> 6] & (1L << site)) != 0;
+    }
+
+    private void validate(int row, int col) {
+        if (row <= 0 || row > n || col <= 0 || col > n) {
+            throw new IllegalArgumentException("row and col must be between 1 and " + n);
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        validate(row, col);
+
+        return isOpenSite(layout.index(row - 1, col - 1));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        validate(row, col);
+
+        int site = layout.index(row - 1, col - 1);
+        return isOpenSite(site) && (meta[find(site)] & TOP) != 0;
+    }
+
+    // Sets bit id of mask (id = row * n + col, zero-based) for every full site
+    // and clears the rest.  mask needs at least (n*n + 63) / 64 longs.
+    //
+    // One pass over the open sites, looking up each one's root flags.  The
+    // path halving in find() flattens the trees as we go, so this is close to
+    // linear.
+    public void fullMask(long[] mask) {
+        int siteCount = n * n;
+        if (mask.length < (siteCount + 63) >>> 6)
+            throw new IllegalArgumentException("mask needs " + ((siteCount + 63) >>> 6) + " longs");
+
+        Arrays.fill(mask, 0L);
+
+        int id = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++, id++) {
+                int site = layout.index(i, j);
+                if (isOpenSite(site) && (meta[find(site)] & TOP) != 0)
+                    mask[id >>> 6] |= 1L << id;
+            }
+        }
+    }
+
+    // Returns the ids (row * n + col, zero-based) of the sites that have
+    // become full since the last call, in increasing order.  The first call
+    // returns every full site.
+    public int[] newlyFull() {
+        if (lastFull == null) {
+            lastFull = new long[(n * n + 63) >>> 6];
+            nowFull = new long[lastFull.length];
+        }
+
+        fullMask(nowFull);
+        int[] result = Percolation.diffMask(nowFull, lastFull);
+
+        long[] tmp = lastFull;
+        lastFull = nowFull;
+        nowFull = tmp;
+
+        return result;
+    }
+
+    // returns the number of open sites
+    public int numberOfOpenSites() {
+        return openCount;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+}
@@ -0,0 +1,342 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// A Percolation that any number of threads can open sites on at once.
+//
+// The union-find follows Anderson and Woll: parents are only ever changed with
+// compare-and-set, find() does path halving with CAS (losing a race just means
+// the path stays a bit longer), and union() links one root under another with
+// a single CAS on the root's parent, retrying if the root was taken in the
+// meantime.  Nothing ever blocks.
+//
+// Links always go from the root with the lower pseudo-random priority to the
+// higher one.  That rules out cycles (priorities strictly increase going up a
+// path) and gives expected logarithmic depth without having to keep ranks
+// consistent across threads.
+//
+// As in CompactPercolation, roots carry "touches top" and "touches bottom"
+// flags instead of there being dummy sites.  The catch is keeping isFull()
+// linearizable: fullness can't be undone, so once any call has said a site is
+// full every later call has to agree.  If a root were simply linked and its
+// flags copied up afterwards, a reader could land on the new root in between,
+// find no TOP there, and say "not full" about a site that was full a moment
+// ago.
+//
+// So linking a root takes three steps, and any thread that finds one half done
+// finishes it off rather than waiting:
+//
+//   1. Record the new parent in pending[], with a CAS from 0, which also
+//      settles who gets to link the root.
+//   2. Set FROZEN in the root's flags.  From then on its flags never change:
+//      anyone who wants to add a flag there (addFlags()) or read them
+//      (isFull()) follows pending[] to the new parent's root instead.
+//   3. OR the frozen flags into the new parent's root, and only then CAS the
+//      parent pointer.
+//
+// A root whose flags aren't frozen really is a root, and it has every flag of
+// every site below it, so the flags word alone is enough to answer isFull()
+// and reading it is the linearization point.
+// The parent array holds parent + 1, with 0 meaning the site is blocked, so
+// claiming a site is a single CAS from 0 and a new grid needs no setup.
+public class ConcurrentPercolation {
+
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int FROZEN = 4;     // Being linked; see pending.
+
+    private final int n;
+    private final AtomicIntegerArray parent;    // parent + 1, or 0 for blocked.
+    private final AtomicIntegerArray flags;
+    private final AtomicIntegerArray pending;   // New parent + 1, or 0.
+    // A LongAdder rather than an AtomicInteger so that threads opening sites
+    // don't all fight over one counter.
+    private final LongAdder openCount = new LongAdder();
+    private volatile boolean percolates;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public ConcurrentPercolation(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be a positive number");
+        }
+        if ((long) n * n > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("n is too big: " + n);
+        }
+
+        this.n = n;
+        parent = new AtomicIntegerArray(n * n);
+        flags = new AtomicIntegerArray(n * n);
+        pending = new AtomicIntegerArray(n * n);
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(int row, int col) {
+        validate(row, col);
+
+        int i = row - 1, j = col - 1;
+        int site = i * n + j;
+
+        // Whoever wins this gets to connect the site up.
+        if (!parent.compareAndSet(site, 0, site + 1))
+            return;
+
+        openCount.increment();
+
+        int f = 0;
+        if (i == 0)
+            f |= TOP;
+        if (i == n - 1)
+            f |= BOTTOM;
+        if (f != 0)
+            addFlags(site, f);
+
+        // A neighbour opened at the same time will see this site open when it
+        // looks, since we claimed it first, so at least one of us does the
+        // union.
+        if (i > 0 && isOpenSite(site - n))
+            union(site, site - n);
+        if (i < n - 1 && isOpenSite(site + n))
+            union(site, site + n);
+        if (j > 0 && isOpenSite(site - 1))
+            union(site, site - 1);
+        if (j < n - 1 && isOpenSite(site + 1))
+            union(site, site + 1);
+    }
+
+    private void union(int a, int b) {
+        while (true) {
+            int ra = find(a);
+            int rb = find(b);
+            if (ra == rb)
+                return;
+
+            // Link the lower priority root under the higher one.
+            if (before(rb, ra)) {
+                int tmp = ra;
+                ra = rb;
+                rb = tmp;
+            }
+
+            // If someone else is already linking ra, help them and go again.
+            boolean ours = pending.compareAndSet(ra, 0, rb + 1);
+            link(ra);
+            if (ours)
+                return;
+        }
+    }
+
+    // Finish linking root under pending[root]: steps 2 and 3 above.  Any
+    // number of threads can run this at once.
+    private void link(int root) {
+        int target = pending.get(root) - 1;
+        int f = flags.getAndAccumulate(root, FROZEN, (old, add) -> old | add);
+
+        f &= TOP | BOTTOM;
+        if (f != 0)
+            addFlags(target, f);
+
+        parent.compareAndSet(root, root + 1, target + 1);
+    }
+
+    // OR f into the flags of x's root, following pending[] past roots that
+    // are being linked.
+    private void addFlags(int x, int f) {
+        while (true) {
+            int root = find(x);
+            int old = flags.get(root);
+
+            if ((old & FROZEN) != 0) {
+                x = pending.get(root) - 1;
+                continue;
+            }
+
+            if ((old | f) == old || flags.compareAndSet(root, old, old | f)) {
+                if (((old | f) & (TOP | BOTTOM)) == (TOP | BOTTOM))
+                    percolates = true;
+                return;
+            }
+        }
+    }
+
+    private int find(int x) {
+        while (true) {
+            int p = parent.get(x) - 1;
+            if (p == x)
+                return x;
+
+            int gp = parent.get(p) - 1;
+            if (gp != p)
+                parent.compareAndSet(x, p + 1, gp + 1);    // Path halving.
+            x = gp;
+        }
+    }
+
+    // Does root a come before root b in the linking order?
+    private static boolean before(int a, int b) {
+        int pa = priority(a), pb = priority(b);
+        return pa < pb || (pa == pb && a < b);
+    }
+
+    // A fixed pseudo-random priority per site (the murmur3 finaliser).
+    private static int priority(int x) {
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        x *= 0xc2b2ae35;
+        x ^= x >>> 16;
+        return x;
+    }
+
+    private boolean isOpenSite(int site) {
+        return parent.get(site) != 0;
+    }
+
+    private void validate(int row, int col) {
+        if (row <= 0 || row > n || col <= 0 || col > n) {
+            throw new IllegalArgumentException("row and col must be between 1 and " + n);
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        validate(row, col);
+
+        return isOpenSite((row - 1) * n + (col - 1));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        validate(row, col);
+
+        int site = (row - 1) * n + (col - 1);
+        if (!isOpenSite(site))
+            return false;
+
+        while (true) {
+            int root = find(site);
+            int f = flags.get(root);
+
+            if ((f & TOP) != 0)
+                return true;
+            if ((f & FROZEN) == 0)
+                return false;
+
+            // root is being linked, and its flags might already have gone on
+            // to the new parent's root.
+            site = pending.get(root) - 1;
+        }
+    }
+
+    // returns the number of open sites
+    //
+    // While other threads are still opening sites this may be a little out
+    // of date: LongAdder sums its cells without stopping them.
+    public int numberOfOpenSites() {
+        return openCount.intValue();
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // Usage: ConcurrentPercolation n threads [seed]
+    //        ConcurrentPercolation -check n threads [seed]
+    //
+    // Has every thread open random sites on one shared grid until it
+    // percolates, and prints the threshold.
+    //
+    // With -check, the threads also keep asking isFull() about random sites
+    // while they open, and count any site that was reported full once and
+    // then not full later.  At the end every site is compared with a plain
+    // Percolation given the same open sites.
+    public static void main(String[] args) throws InterruptedException {
+        if (args[0].equals("-check")) {
+            check(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                  args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime());
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int threadCount = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        ConcurrentPercolation p = new ConcurrentPercolation(n);
+        SplittableRandom root = new SplittableRandom(seed);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            SplittableRandom rng = root.split();
+            threads[t] = new Thread(() -> {
+                while (!p.percolates()) {
+                    p.open(rng.nextInt(1, n+1), rng.nextInt(1, n+1));
+                }
+            });
+            threads[t].start();
+        }
+
+        for (Thread t: threads) {
+            t.join();
+        }
+
+        StdOut.printf("threshold = %f\n", (double) p.numberOfOpenSites() / ((double) n * n));
+    }
+
+    private static void check(int n, int threadCount, long seed) throws InterruptedException {
+        ConcurrentPercolation p = new ConcurrentPercolation(n);
+        AtomicIntegerArray seenFull = new AtomicIntegerArray(n * n);
+        AtomicInteger violations = new AtomicInteger();
+        SplittableRandom root = new SplittableRandom(seed);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            SplittableRandom rng = root.split();
+            threads[t] = new Thread(() -> {
+                while (p.numberOfOpenSites() < n * n * 3 / 4) {
+                    p.open(rng.nextInt(1, n+1), rng.nextInt(1, n+1));
+
+                    for (int k = 0; k < 4; k++) {
+                        int row = rng.nextInt(1, n+1), col = rng.nextInt(1, n+1);
+                        int site = (row - 1) * n + (col - 1);
+
+                        // Read seenFull first: if it was set, that isFull()
+                        // call finished before ours started.
+                        boolean before = seenFull.get(site) == 1;
+                        if (p.isFull(row, col))
+                            seenFull.set(site, 1);
+                        else if (before)
+                            violations.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        for (Thread t: threads) {
+            t.join();
+        }
+
+        Percolation serial = new Percolation(n);
+        int mismatches = 0;
+        for (int row = 1; row <= n; row++) {
+            for (int col = 1; col <= n; col++) {
+                if (p.isOpen(row, col))
+                    serial.open(row, col);
+            }
+        }
+        for (int row = 1; row <= n; row++) {
+            for (int col = 1; col <= n; col++) {
+                if (p.isFull(row, col) != serial.isFull(row, col))
+                    ++mismatches;
+            }
+        }
+        if (p.percolates() != serial.percolates())
+            ++mismatches;
+
+        StdOut.printf("fullness went backwards: %d, differences from Percolation: %d\n",
+                      violations.get(), mismatches);
+    }
+}
@@ -0,0 +1,190 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// Percolation for grids too big for the heap, or for int indexes.
+//
+// Percolation works out n * n and its site indexes in int arithmetic, which
+// silently overflows past n = 46,340, and a 100k-by-100k grid has 10^10 sites
+// which no Java array can hold anyway.  This version does all site arithmetic
+// in longs and keeps the union-find off-heap in MappedArrays, so the grid costs
+// the garbage collector nothing and the OS pages it in and out as needed.
+//
+// The union-find is the same as CompactPercolation's -- one union-find, union
+// by rank, path halving, top/bottom flags on the roots -- except that the open
+// bit is folded into the parent array: it holds parent + 1, with 0 meaning the
+// site is blocked.  Since a new MappedArray is all zeros, every site starts out
+// blocked without touching the file.  That's 9 bytes per site in total.
+//
+// Call close() when done to delete the backing files.
+public class LargePercolation implements AutoCloseable {
+
+    // Layout of a meta byte: the low 6 bits are the rank, then the two flags.
+    private static final int RANK_MASK = 0x3f;
+    private static final byte TOP = 0x40;
+    private static final byte BOTTOM = (byte) 0x80;
+
+    // Largest n for which the parent array's n * n * 8 bytes fits in a long,
+    // and in the 2^31 - 1 chunks of 1GB a MappedArray can have: n < 2^29.
+    private static final long MAX_N = (1L << 29) - 1;
+
+    private final long n;
+    private final MappedArray parent;   // parent + 1, or 0 for blocked.
+    private final MappedArray meta;
+    private long openCount;
+    private boolean percolates;
+
+    // creates n-by-n grid, with all sites initially blocked, backed by files in
+    // the default temporary directory
+    public LargePercolation(long n) {
+        this(n, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    // creates n-by-n grid, with all sites initially blocked, backed by files in
+    // directory dir
+    public LargePercolation(long n, Path dir) {
+        if (n <= 0 || n > MAX_N) {
+            throw new IllegalArgumentException("n must be between 1 and " + MAX_N);
+        }
+
+        this.n = n;
+        long siteCount = n * n;
+
+        parent = new MappedArray(dir, siteCount * 8);
+        meta = new MappedArray(dir, siteCount);
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(long row, long col) {
+        validate(row, col);
+
+        long i = row - 1, j = col - 1;
+        long site = i * n + j;
+
+        if (isOpenSite(site))
+            return;
+
+        parent.putLong(site, site + 1);
+        ++openCount;
+
+        byte flags = 0;
+        if (i == 0)
+            flags |= TOP;
+        if (i == n - 1)
+            flags |= BOTTOM;
+        meta.putByte(site, flags);
+
+        if (i > 0 && isOpenSite(site - n))
+            union(site, site - n);
+        if (i < n - 1 && isOpenSite(site + n))
+            union(site, site + n);
+        if (j > 0 && isOpenSite(site - 1))
+            union(site, site - 1);
+        if (j < n - 1 && isOpenSite(site + 1))
+            union(site, site + 1);
+
+        if ((meta.getByte(find(site)) & (TOP | BOTTOM)) == (TOP | BOTTOM))
+            percolates = true;
+    }
+
+    private void union(long a, long b) {
+        a = find(a);
+        b = find(b);
+        if (a == b)
+            return;
+
+        byte metaA = meta.getByte(a);
+        byte metaB = meta.getByte(b);
+        int rankA = metaA & RANK_MASK;
+        int rankB = metaB & RANK_MASK;
+
+        // Make a the root that survives.
+        if (rankA < rankB) {
+            long tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        parent.putLong(b, a + 1);
+        int flags = (metaA | metaB) & (TOP | BOTTOM);
+        int rank = Math.max(rankA, rankB);
+        if (rankA == rankB)
+            ++rank;
+        meta.putByte(a, (byte) (flags | rank));
+    }
+
+    private long find(long site) {
+        long p = parent.getLong(site) - 1;
+
+        while (p != site) {
+            long grandparent = parent.getLong(p) - 1;
+            parent.putLong(site, grandparent + 1);  // Path halving.
+            site = grandparent;
+            p = parent.getLong(site) - 1;
+        }
+        return site;
+    }
+
+    private boolean isOpenSite(long site) {
+        return parent.getLong(site) != 0;
+    }
+
+    private void validate(long row, long col) {
+        if (row <= 0 || row > n || col <= 0 || col > n) {
+            throw new IllegalArgumentException("row and col must be between 1 and " + n);
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(long row, long col) {
+        validate(row, col);
+
+        return isOpenSite((row - 1) * n + (col - 1));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(long row, long col) {
+        validate(row, col);
+
+        long site = (row - 1) * n + (col - 1);
+        return isOpenSite(site) && (meta.getByte(find(site)) & TOP) != 0;
+    }
+
+    // returns the number of open sites
+    public long numberOfOpenSites() {
+        return openCount;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // unmaps and deletes the backing files
+    public void close() {
+        parent.close();
+        meta.close();
+    }
+
+    // Usage: LargePercolation n [seed [dir]]
+    //
+    // Runs one trial of random opens on an n-by-n grid and prints the
+    // threshold.
+    public static void main(String[] args) {
+        long n = Long.parseLong(args[0]);
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        Path dir = Paths.get(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"));
+
+        SplittableRandom rng = new SplittableRandom(seed);
+
+        try (LargePercolation p = new LargePercolation(n, dir)) {
+            while (!p.percolates()) {
+                p.open(rng.nextLong(1, n+1), rng.nextLong(1, n+1));
+            }
+
+            StdOut.printf("threshold = %f\n", (double) p.numberOfOpenSites() / ((double) n * n));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// The shape of a lattice: which sites there are, which are neighbours, and
+// which bonds join them.
+//
+// This is a hypercubic lattice of side n in 2 or 3 dimensions.  Sites are
+// numbered row-major with axis 0 as the vertical one, so in 2D a site's id is
+// row * n + col just like everywhere else, and "top" and "bottom" are the
+// first and last layers along axis 0.
+//
+// Moving one step along an axis is always the same offset in site ids, so the
+// 2 * dim neighbour offsets are worked out once here and neighbour() only has
+// to check that the step doesn't fall off the edge.
+//
+// Bonds join each site to its neighbour one step further along each axis.
+// They're numbered axis by axis, and within an axis in the same row-major
+// order as their lower site, with n - 1 rather than n positions along that
+// axis, so bond ids are dense: 0..bonds()-1 are all real bonds.
+public class Lattice {
+
+    private final int dim;
+    private final int n;
+    private final int sites;
+    private final int bondsPerAxis;
+    private final int[] stride;     // Site id step along each axis.
+    private final int[] offset;     // Site id step for each direction.
+
+    private Lattice(int dim, int n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be a positive number");
+
+        long siteCount = 1;
+        for (int k = 0; k < dim; k++) {
+            siteCount *= n;
+        }
+        long bondCount = dim * (siteCount / n) * (n - 1);
+        if (siteCount > Integer.MAX_VALUE || bondCount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Lattice too big: side " + n);
+
+        this.dim = dim;
+        this.n = n;
+        this.sites = (int) siteCount;
+        this.bondsPerAxis = (int) (bondCount / dim);
+
+        stride = new int[dim];
+        offset = new int[2 * dim];
+        int s = 1;
+        for (int k = dim - 1; k >= 0; k--) {
+            stride[k] = s;
+            offset[2 * k] = -s;
+            offset[2 * k + 1] = s;
+            s *= n;
+        }
+    }
+
+    // n-by-n square lattice
+    public static Lattice square(int n) {
+        return new Lattice(2, n);
+    }
+
+    // n-by-n-by-n simple cubic lattice
+    public static Lattice cubic(int n) {
+        return new Lattice(3, n);
+    }
+
+    // number of dimensions
+    public int dimensions() {
+        return dim;
+    }
+
+    // length of a side
+    public int side() {
+        return n;
+    }
+
+    // number of sites
+    public int sites() {
+        return sites;
+    }
+
+    // number of bonds
+    public int bonds() {
+        return bondsPerAxis * dim;
+    }
+
+    // number of directions a site can have a neighbour in
+    public int degree() {
+        return 2 * dim;
+    }
+
+    // The neighbour of site in direction dir (0 <= dir < degree()), or -1 if
+    // that's off the edge.  Directions 2k and 2k+1 are one step back and
+    // forward along axis k.
+    public int neighbour(int site, int dir) {
+        int axis = dir >>> 1;
+        int coord = (site / stride[axis]) % n;
+
+        if ((dir & 1) == 0 ? coord == 0 : coord == n - 1)
+            return -1;
+        return site + offset[dir];
+    }
+
+    // is site in the top layer?
+    public boolean onTop(int site) {
+        return site < stride[0];
+    }
+
+    // is site in the bottom layer?
+    public boolean onBottom(int site) {
+        return site >= sites - stride[0];
+    }
+
+    // the lower-numbered site joined by bond
+    public int bondFrom(int bond) {
+        int axis = bond / bondsPerAxis;
+        int r = bond - axis * bondsPerAxis;
+
+        // Decode r in mixed radix, least significant (last) axis first.
+        int site = 0;
+        for (int k = dim - 1; k >= 0; k--) {
+            int radix = k == axis ? n - 1 : n;
+            site += (r % radix) * stride[k];
+            r /= radix;
+        }
+        return site;
+    }
+
+    // the higher-numbered site joined by bond
+    public int bondTo(int bond) {
+        return bondFrom(bond) + stride[bond / bondsPerAxis];
+    }
+}
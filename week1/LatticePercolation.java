@@ -0,0 +1,193 @@
+// Site or bond percolation on any Lattice.
+//
+// In site percolation the elements being opened are the sites, and an opened
+// site joins up with its open neighbours.  In bond percolation every site is
+// there from the start and the elements being opened are the bonds; opening a
+// bond joins the two sites at its ends.  Either way the question is whether
+// some cluster reaches from the top layer to the bottom one.
+//
+// The union-find is CompactPercolation's -- path halving, rank and "touches
+// top"/"touches bottom" flags packed in a byte per site -- and neighbours come
+// from the lattice's precomputed offsets, so opening something allocates
+// nothing.  Elements are zero-based ids: site ids or bond ids as numbered by
+// the Lattice.
+public class LatticePercolation {
+
+    private static final int RANK_MASK = 0x1f;
+    private static final byte TOP = 0x20;
+    private static final byte BOTTOM = 0x40;
+
+    private final Lattice lattice;
+    private final boolean bonds;
+    private final int[] parent;
+    private final byte[] meta;
+    private final long[] open;      // Bitset of open elements.
+    private int openCount;
+    private boolean percolates;
+
+    // creates a lattice with every element blocked; bonds picks bond rather
+    // than site percolation
+    public LatticePercolation(Lattice lattice, boolean bonds) {
+        this.lattice = lattice;
+        this.bonds = bonds;
+
+        int sites = lattice.sites();
+        parent = new int[sites];
+        meta = new byte[sites];
+        open = new long[(elements() + 63) >>> 6];
+
+        for (int i = 0; i < sites; i++) {
+            parent[i] = i;
+        }
+
+        // With bonds, the sites are all there already.
+        if (bonds) {
+            for (int i = 0; i < sites; i++) {
+                meta[i] = flagsFor(i);
+            }
+            if (sites == 1)
+                percolates = true;
+        }
+    }
+
+    // the lattice
+    public Lattice lattice() {
+        return lattice;
+    }
+
+    // number of elements (sites or bonds) that can be opened
+    public int elements() {
+        return bonds ? lattice.bonds() : lattice.sites();
+    }
+
+    // opens element if it is not open already
+    public void open(int element) {
+        validate(element);
+
+        openElement(element);
+    }
+
+    // Opens the elements ids[from..to) in that order, stopping as soon as the
+    // system percolates.  Works like Percolation.openInOrder().
+    public int openInOrder(int[] ids, int from, int to) {
+        if (from < 0 || to > ids.length || from > to)
+            throw new IllegalArgumentException("Invalid range");
+
+        int k = from;
+
+        while (k < to && !percolates) {
+            int id = ids[k++];
+            validate(id);
+
+            openElement(id);
+        }
+
+        return k;
+    }
+
+    private void openElement(int element) {
+        if (isOpenElement(element))
+            return;
+
+        open[element >>> 6] |= 1L << element;
+        ++openCount;
+
+        int root;
+        if (bonds) {
+            root = union(lattice.bondFrom(element), lattice.bondTo(element));
+        } else {
+            meta[element] |= flagsFor(element);
+
+            root = element;
+            int degree = lattice.degree();
+            for (int dir = 0; dir < degree; dir++) {
+                int next = lattice.neighbour(element, dir);
+                if (next >= 0 && isOpenElement(next))
+                    root = union(element, next);
+            }
+            root = find(root);
+        }
+
+        if ((meta[root] & (TOP | BOTTOM)) == (TOP | BOTTOM))
+            percolates = true;
+    }
+
+    private byte flagsFor(int site) {
+        byte flags = 0;
+        if (lattice.onTop(site))
+            flags |= TOP;
+        if (lattice.onBottom(site))
+            flags |= BOTTOM;
+        return flags;
+    }
+
+    // Returns the surviving root.
+    private int union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b)
+            return a;
+
+        int rankA = meta[a] & RANK_MASK;
+        int rankB = meta[b] & RANK_MASK;
+
+        if (rankA < rankB) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        parent[b] = a;
+        int flags = (meta[a] | meta[b]) & (TOP | BOTTOM);
+        int rank = Math.max(rankA, rankB);
+        if (rankA == rankB)
+            ++rank;
+        meta[a] = (byte) (flags | rank);
+        return a;
+    }
+
+    private int find(int site) {
+        while (parent[site] != site) {
+            parent[site] = parent[parent[site]];    // Path halving.
+            site = parent[site];
+        }
+        return site;
+    }
+
+    private boolean isOpenElement(int element) {
+        return (open[element >>> 6] & (1L << element)) != 0;
+    }
+
+    private void validate(int element) {
+        if (element < 0 || element >= elements())
+            throw new IllegalArgumentException("element must be between 0 and " + (elements() - 1));
+    }
+
+    // is element open?
+    public boolean isOpen(int element) {
+        validate(element);
+
+        return isOpenElement(element);
+    }
+
+    // Is site connected to the top layer?  In site percolation that needs the
+    // site itself to be open; with bonds every site counts.
+    public boolean isFull(int site) {
+        if (site < 0 || site >= lattice.sites())
+            throw new IllegalArgumentException("site must be between 0 and " + (lattice.sites() - 1));
+
+        if (!bonds && !isOpenElement(site))
+            return false;
+        return (meta[find(site)] & TOP) != 0;
+    }
+
+    // returns the number of open elements
+    public int numberOfOpen() {
+        return openCount;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+}
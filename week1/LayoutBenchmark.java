@@ -0,0 +1,57 @@
+import edu.princeton.cs.algs4.StdOut;
+
+// Measures opens per second of CompactPercolation with each SiteLayout.
+//
+// Every layout runs the same trials: the same seeded opening orders, each run
+// until the grid percolates, so they all do exactly the same opens and unions
+// and only the memory layout differs.  One warm-up trial per layout isn't
+// counted.
+//
+// Usage: LayoutBenchmark n [trials [tile [seed]]]
+public class LayoutBenchmark {
+
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int tile = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        SiteLayout[] layouts = {
+            SiteLayout.rowMajor(n),
+            SiteLayout.tiled(n, tile),
+            SiteLayout.morton(n),
+        };
+        String[] names = { "row-major", "tiled(" + tile + ")", "morton" };
+
+        for (int l = 0; l < layouts.length; l++) {
+            RandomSource root = RandomSource.splittable(seed);
+
+            run(layouts[l], root.split());
+
+            long opens = 0;
+            long start = System.nanoTime();
+            for (int t = 0; t < trials; t++) {
+                opens += run(layouts[l], root.split());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            StdOut.printf("%-12s %12.0f opens/sec  (%d slots)\n",
+                          names[l], opens / seconds, layouts[l].capacity());
+        }
+    }
+
+    // One trial; returns the number of sites opened.
+    private static int run(SiteLayout layout, RandomSource rng) {
+        int n = layout.side();
+        CompactPercolation p = new CompactPercolation(layout);
+        SiteOrder order = new SiteOrder(n * n, rng);
+        int[] batch = new int[n];
+
+        while (!p.percolates()) {
+            int count = order.fill(batch);
+            p.openInOrder(batch, 0, count);
+        }
+
+        return p.numberOfOpenSites();
+    }
+}
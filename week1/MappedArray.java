@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A long-indexed array that lives outside the Java heap, in a memory-mapped
+// temporary file.
+//
+// A single MappedByteBuffer can only address 2GB, so the file is mapped in 1GB
+// chunks and an index is split into a chunk number and an offset.  Chunks are a
+// multiple of 8 bytes so a long never straddles two of them.
+//
+// A freshly created file reads as all zeros, which the users of this class
+// rely on to skip initialising anything.  The file is deleted when the array is
+// closed, and the chunks are unmapped then too: otherwise the deleted file's
+// blocks stay allocated until the buffers happen to be garbage collected,
+// which for a program built to avoid garbage can be a long wait.
+class MappedArray implements AutoCloseable {
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    // As many whole chunks as an array of them can hold.
+    private static final long MAX_BYTES = (long) Integer.MAX_VALUE << CHUNK_SHIFT;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+
+    // Map a zero-filled file of the given number of bytes in directory dir.
+    MappedArray(Path dir, long bytes) {
+        if (bytes <= 0)
+            throw new IllegalArgumentException("bytes must be a positive number");
+        if (bytes > MAX_BYTES)
+            throw new IllegalArgumentException("bytes must be at most " + MAX_BYTES);
+
+        try {
+            Path file = Files.createTempFile(dir, "percolation", ".bin");
+            channel = FileChannel.open(file,
+                                       StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE,
+                                       StandardOpenOption.DELETE_ON_CLOSE);
+
+            int chunkCount = (int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT);
+            chunks = new MappedByteBuffer[chunkCount];
+
+            for (int c = 0; c < chunkCount; c++) {
+                long start = (long) c << CHUNK_SHIFT;
+                long size = Math.min(bytes - start, 1L << CHUNK_SHIFT);
+
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+                chunks[c].order(ByteOrder.nativeOrder());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The i'th long, treating the whole file as a long[].
+    long getLong(long i) {
+        long offset = i << 3;
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    void putLong(long i, long value) {
+        long offset = i << 3;
+        chunks[(int) (offset >>> CHUNK_SHIFT)].putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    // The i'th byte, treating the whole file as a byte[].
+    byte getByte(long i) {
+        return chunks[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+    }
+
+    void putByte(long i, byte value) {
+        chunks[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), value);
+    }
+
+    public void close() {
+        // Touching an unmapped buffer crashes the JVM, so forget them first:
+        // using the array after close() is then a NullPointerException.
+        for (int c = 0; c < chunks.length; c++) {
+            MappedByteBuffer chunk = chunks[c];
+            chunks[c] = null;
+            if (chunk != null)
+                unmap(chunk);
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // There's no public way to unmap a MappedByteBuffer, so this uses
+    // sun.misc.Unsafe.invokeCleaner() (in jdk.unsupported, which every module
+    // can read).  If that isn't there, the mapping goes whenever the buffer is
+    // collected.
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null)
+            return;
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Couldn't unmap buffer", e);
+        }
+    }
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available; fall back to the garbage collector.
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+}
@@ -0,0 +1,67 @@
+import java.lang.management.ManagementFactory;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// Measures Percolation.open() throughput and heap allocation on the
+// PercolationStats workload: seeded trials on an n-by-n grid, each opening
+// sites from a SiteOrder until the grid percolates.
+//
+// Only the opening loop is measured.  Building the Percolation and SiteOrder
+// for each trial happens outside it, so the bytes per open are down to open()
+// itself.  The first trials are a warm-up and aren't counted.
+//
+// Allocation is read from com.sun.management.ThreadMXBean, which HotSpot JVMs
+// provide; elsewhere it's reported as -1.
+//
+// Usage: OpenBenchmark n [trials [seed]]
+public class OpenBenchmark {
+
+    private static final int WARMUP_TRIALS = 3;
+
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        RandomSource root = RandomSource.splittable(seed);
+        int[] batch = new int[n];
+
+        long opens = 0;
+        long nanos = 0;
+        long bytes = 0;
+
+        for (int t = 0; t < WARMUP_TRIALS + trials; t++) {
+            Percolation p = new Percolation(n);
+            SiteOrder order = new SiteOrder(n * n, root.split());
+
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+
+            while (!p.percolates()) {
+                int count = order.fill(batch);
+                p.openInOrder(batch, 0, count);
+            }
+
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - bytesBefore;
+
+            if (t >= WARMUP_TRIALS) {
+                opens += p.numberOfOpenSites();
+                nanos += elapsed;
+                bytes += allocated;
+            }
+        }
+
+        StdOut.printf("opens/sec       = %.0f\n", opens / (nanos / 1e9));
+        StdOut.printf("bytes per open  = %.2f\n", allocatedBytes() < 0 ? -1.0 : (double) bytes / opens);
+    }
+
+    // Bytes allocated so far by this thread, or -1 if the JVM won't say.
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
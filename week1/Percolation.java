@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 import edu.princeton.cs.algs4.WeightedQuickUnionUF;
 
 public class Percolation {
@@ -8,6 +10,11 @@ public class Percolation {
     private WeightedQuickUnionUF backwashPreventer;
     private int openCount;
 
+    // Scratch for fullMask() and newlyFull(), allocated on first use.
+    private int[] fillStack;
+    private long[] lastFull;
+    private long[] nowFull;
+
     // Top and bottom dummy site indexes in the WeightedQuickUnionUF.
     private final int TOP_SITE_ELEMENT;
     private final int BOTTOM_SITE_ELEMENT;
@@ -42,8 +49,35 @@ public class Percolation {
     public void open(int row, int col) {
         validate(row, col);
         
-        int i = row - 1, j = col - 1;
+        openSite(row - 1, col - 1);
+    }
+
+    // Opens the sites siteIds[from..to) in that order, stopping as soon as the
+    // system percolates.  Site ids are zero-based and row-major (row * n +
+    // col), as handed out by SiteOrder.
+    //
+    // Returns the index one past the last site that was looked at, i.e. to if
+    // the system didn't percolate on the way.
+    public int openInOrder(int[] siteIds, int from, int to) {
+        if (from < 0 || to > siteIds.length || from > to)
+            throw new IllegalArgumentException("Invalid range");
+
+        int n = grid.length;
+        int k = from;
+
+        while (k < to && !percolates()) {
+            int id = siteIds[k++];
+            if (id < 0 || id >= siteCount)
+                throw new IllegalArgumentException("Invalid site id: " + id);
+
+            openSite(id / n, id % n);
+        }
+
+        return k;
+    }
 
+    // Opens the site at i, j (zero-based) if it isn't already.
+    private void openSite(int i, int j) {
         if (grid[i][j]) {
             return;
         }
@@ -70,37 +104,28 @@ public class Percolation {
     }
 
     // Connect open sites surrounding pos: i, j.
+    //
+    // Each direction is spelled out rather than looping over a table of
+    // neighbour positions: that table used to be allocated on every open, and
+    // the only bounds check each direction needs is the one edge it could fall
+    // off.
     private void connectNeighbours(int i, int j) {
         int ufe = ufElement(i, j);
-        
-        int nexti = 0, nextj = 0;
-
-        int[][] neighbours = {
-            {i-1, j},           // above
-            {i+1, j},           // below
-            {i, j-1},           // left
-            {i, j+1}};          // right
-
-        for (int k = 0; k < neighbours.length; k++) {
-            nexti = neighbours[k][0];
-            nextj = neighbours[k][1];
+        int last = grid.length - 1;
 
-            if (validGridPos(nexti, nextj) && grid[nexti][nextj]) {
-                uf.union(ufe, ufElement(nexti, nextj));
-                backwashPreventer.union(ufe, ufElement(nexti, nextj));
-            }
-        }
+        if (i > 0 && grid[i-1][j])          // above
+            connect(ufe, ufe - grid.length);
+        if (i < last && grid[i+1][j])       // below
+            connect(ufe, ufe + grid.length);
+        if (j > 0 && grid[i][j-1])          // left
+            connect(ufe, ufe - 1);
+        if (j < last && grid[i][j+1])       // right
+            connect(ufe, ufe + 1);
     }
 
-    // Return true iff i and j are valid indices into the grid.  This
-    // is zero-based, not 1-based like the public API.
-    private boolean validGridPos(int i, int j) {
-        if (i < 0 || i > grid.length - 1)
-            return false;
-        if (j < 0 || j > grid.length - 1)
-            return false;
-
-        return true;
+    private void connect(int a, int b) {
+        uf.union(a, b);
+        backwashPreventer.union(a, b);
     }
 
     // Convert row and column to sequential index for use with
@@ -138,6 +163,96 @@ public class Percolation {
         return backwashPreventer.find(TOP_SITE_ELEMENT) == backwashPreventer.find(ufElement(i, j));
     }
 
+    // Sets bit id of mask (id = row * n + col, zero-based) for every full site
+    // and clears the rest.  mask needs at least (n*n + 63) / 64 longs.
+    //
+    // Rather than asking the union-find about every site, this is a flood fill
+    // through the open sites from the open sites on the top row -- which is
+    // exactly the set backwashPreventer would call full -- so a whole frame
+    // costs one linear pass over the grid.
+    public void fullMask(long[] mask) {
+        int n = grid.length;
+        if (mask.length < (siteCount + 63) >>> 6)
+            throw new IllegalArgumentException("mask needs " + ((siteCount + 63) >>> 6) + " longs");
+
+        Arrays.fill(mask, 0L);
+
+        if (fillStack == null)
+            fillStack = new int[siteCount];
+        int top = 0;
+
+        for (int j = 0; j < n; j++) {
+            if (grid[0][j]) {
+                mask[j >>> 6] |= 1L << j;
+                fillStack[top++] = j;
+            }
+        }
+
+        while (top > 0) {
+            int id = fillStack[--top];
+            int i = id / n, j = id % n;
+
+            if (i > 0)
+                top = fill(mask, i - 1, j, top);
+            if (i < n - 1)
+                top = fill(mask, i + 1, j, top);
+            if (j > 0)
+                top = fill(mask, i, j - 1, top);
+            if (j < n - 1)
+                top = fill(mask, i, j + 1, top);
+        }
+    }
+
+    // Flood fill step: mark i, j full and push it if it's open and not marked
+    // yet.  Returns the new stack top.
+    private int fill(long[] mask, int i, int j, int top) {
+        int id = ufElement(i, j);
+        if (grid[i][j] && (mask[id >>> 6] & (1L << id)) == 0) {
+            mask[id >>> 6] |= 1L << id;
+            fillStack[top++] = id;
+        }
+        return top;
+    }
+
+    // Returns the ids (row * n + col, zero-based) of the sites that have
+    // become full since the last call, in increasing order.  The first call
+    // returns every full site.
+    public int[] newlyFull() {
+        if (lastFull == null) {
+            lastFull = new long[(siteCount + 63) >>> 6];
+            nowFull = new long[lastFull.length];
+        }
+
+        fullMask(nowFull);
+        int[] result = diffMask(nowFull, lastFull);
+
+        long[] tmp = lastFull;
+        lastFull = nowFull;
+        nowFull = tmp;
+
+        return result;
+    }
+
+    // The ids of the bits set in now but not in before.  A full site never
+    // becomes empty again, so that's everything that changed.
+    static int[] diffMask(long[] now, long[] before) {
+        int count = 0;
+        for (int w = 0; w < now.length; w++) {
+            count += Long.bitCount(now[w] & ~before[w]);
+        }
+
+        int[] result = new int[count];
+        int k = 0;
+        for (int w = 0; w < now.length; w++) {
+            long bits = now[w] & ~before[w];
+            while (bits != 0) {
+                result[k++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
     // returns the number of open sites
     public int numberOfOpenSites() {
         return openCount;
@@ -1,8 +1,24 @@
-import edu.princeton.cs.algs4.StdRandom;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import edu.princeton.cs.algs4.StdStats;
 import edu.princeton.cs.algs4.StdOut;
 
 public class PercolationStats {
+    // Trials the adaptive mode always runs before it trusts its own stddev.
+    private static final int MIN_ADAPTIVE_TRIALS = 30;
+
+    // First int of a checkpoint file.
+    private static final int CHECKPOINT_MAGIC = 0x50435331;
+
     private double mean;
     private double stddev;
     private int trials;
@@ -17,21 +33,264 @@ public class PercolationStats {
         double[] thresholds = new double[trials];
 
         for (int i = 0; i < trials; i++) {
-            Percolation p = new Percolation(n);
+            thresholds[i] = runTrial(n, new SiteOrder(n * n));
+        }
 
-            while (!p.percolates()) {
-                int row = StdRandom.uniformInt(1, n+1);
-                int col = StdRandom.uniformInt(1, n+1);
+        mean = StdStats.mean(thresholds);
+        stddev = StdStats.stddev(thresholds);
 
-                p.open(row, col);
-            }
+    }
 
-            thresholds[i] = ((double) p.numberOfOpenSites()) / (n * n);
-        }
+    // Perform independent trials on an n-by-n grid, spread across a fork-join
+    // pool of the given number of threads.
+    //
+    // Every trial gets its own SplittableRandom, split off a root generator
+    // seeded with seed.  The splits happen here in trial order before anything
+    // is handed to the pool, so trial i always sees the same random stream and
+    // the results for a given seed don't depend on the thread count.
+    public PercolationStats(int n, int trials, long seed, int threads) {
+        this(n, trials, RandomSource.splittable(seed), threads);
+    }
+
+    // As above, but with the trials' random streams split off rng.
+    public PercolationStats(int n, int trials, RandomSource rng, int threads) {
+        if (n <= 0 || trials <= 0 || threads <= 0)
+            throw new IllegalArgumentException("Invalid argument");
+
+        this.trials = trials;
+
+        double[] thresholds = runTrials(gridTrial(n), trials, rng, threads);
 
         mean = StdStats.mean(thresholds);
         stddev = StdStats.stddev(thresholds);
+    }
+
+    // Perform independent site or bond percolation trials on lattice, with
+    // seeded random streams and a fork-join pool as in the constructor above.
+    // For bonds the threshold is the fraction of bonds open, which a lattice
+    // of side 1 doesn't have.
+    public PercolationStats(Lattice lattice, boolean bonds, int trials, long seed, int threads) {
+        if (lattice == null || trials <= 0 || threads <= 0)
+            throw new IllegalArgumentException("Invalid argument");
+        if (bonds && lattice.bonds() == 0)
+            throw new IllegalArgumentException("Lattice of side " + lattice.side() + " has no bonds");
+
+        this.trials = trials;
 
+        double[] thresholds = runTrials(latticeTrial(lattice, bonds), trials,
+                                        RandomSource.splittable(seed), threads);
+
+        mean = StdStats.mean(thresholds);
+        stddev = StdStats.stddev(thresholds);
+    }
+
+    // Run trials on a pool of the given size, trial i using the i'th stream
+    // split off root.
+    private static double[] runTrials(Trial trial, int trials, RandomSource root, int threads) {
+        RandomSource[] rngs = new RandomSource[trials];
+        for (int i = 0; i < trials; i++) {
+            rngs[i] = root.split();
+        }
+
+        double[] thresholds = new double[trials];
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new TrialTask(trial, rngs, thresholds, 0, trials));
+        } finally {
+            pool.shutdown();
+        }
+
+        return thresholds;
+    }
+
+    // Perform trials on an n-by-n grid until the 95% confidence interval is
+    // narrower than targetWidth, or maxTrials have run.
+    //
+    // Trials run in batches on a fork-join pool, with random streams split off
+    // seed exactly as in the constructor above.  Results are folded into a
+    // running mean and variance (Welford's method) in trial order, so the
+    // numbers don't depend on the thread count and no thresholds are kept.
+    //
+    // If checkpointFile isn't null, the running state is written to it after
+    // every batch, and if it already exists the run picks up from it instead
+    // of starting over.  Resuming redoes the random stream splits for the
+    // trials already done, so a resumed run ends up exactly where an
+    // uninterrupted one would.
+    public PercolationStats(int n, double targetWidth, int maxTrials, long seed,
+                            int threads, String checkpointFile) {
+        if (n <= 0 || !(targetWidth > 0) || maxTrials <= 1 || threads <= 0)
+            throw new IllegalArgumentException("Invalid argument");
+
+        Path checkpoint = checkpointFile == null ? null : Paths.get(checkpointFile);
+
+        // Welford state.
+        int count = 0;
+        double runningMean = 0.0;
+        double m2 = 0.0;
+
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(checkpoint))) {
+                if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != n || in.readLong() != seed)
+                    throw new IllegalArgumentException("Checkpoint " + checkpoint + " is for a different run");
+
+                count = in.readInt();
+                runningMean = in.readDouble();
+                m2 = in.readDouble();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        RandomSource root = RandomSource.splittable(seed);
+        for (int i = 0; i < count; i++) {
+            root.split();
+        }
+
+        Trial trial = gridTrial(n);
+        int batchSize = Math.max(threads, 16);
+        RandomSource[] rngs = new RandomSource[batchSize];
+        double[] thresholds = new double[batchSize];
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            while (!converged(count, m2, targetWidth, maxTrials)) {
+                int batch = Math.min(batchSize, maxTrials - count);
+                for (int i = 0; i < batch; i++) {
+                    rngs[i] = root.split();
+                }
+
+                pool.invoke(new TrialTask(trial, rngs, thresholds, 0, batch));
+
+                // Check after every trial, not every batch, so where we stop
+                // doesn't depend on the batch size (and so the thread count).
+                // Anything past that point in the batch is thrown away.
+                for (int i = 0; i < batch && !converged(count, m2, targetWidth, maxTrials); i++) {
+                    ++count;
+                    double delta = thresholds[i] - runningMean;
+                    runningMean += delta / count;
+                    m2 += delta * (thresholds[i] - runningMean);
+                }
+
+                if (checkpoint != null)
+                    writeCheckpoint(checkpoint, n, seed, count, runningMean, m2);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        trials = count;
+        mean = runningMean;
+        stddev = Math.sqrt(m2 / (count - 1));
+    }
+
+    // Is the adaptive run done?  m2 is Welford's sum of squared differences
+    // over count trials.
+    private static boolean converged(int count, double m2, double targetWidth, int maxTrials) {
+        if (count >= maxTrials)
+            return true;
+        if (count < MIN_ADAPTIVE_TRIALS)
+            return false;
+
+        double width = 2 * 1.96 * Math.sqrt(m2 / (count - 1)) / Math.sqrt(count);
+        return width < targetWidth;
+    }
+
+    // Write to a temporary file and rename it over the old checkpoint, so a
+    // crash part way through leaves the previous checkpoint intact.
+    private static void writeCheckpoint(Path checkpoint, int n, long seed,
+                                        int count, double mean, double m2) {
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeInt(n);
+                out.writeLong(seed);
+                out.writeInt(count);
+                out.writeDouble(mean);
+                out.writeDouble(m2);
+            }
+            Files.move(tmp, checkpoint,
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // One trial, run with the given random stream; returns the fraction of
+    // elements open when the system first percolated.
+    private interface Trial {
+        double run(RandomSource rng);
+    }
+
+    // Runs the trials in [lo, hi), halving the range until there's a single
+    // trial left.  Each trial writes only its own slot of thresholds.
+    private static class TrialTask extends RecursiveAction {
+        private final Trial trial;
+        private final RandomSource[] rngs;
+        private final double[] thresholds;
+        private final int lo;
+        private final int hi;
+
+        TrialTask(Trial trial, RandomSource[] rngs, double[] thresholds, int lo, int hi) {
+            this.trial = trial;
+            this.rngs = rngs;
+            this.thresholds = thresholds;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo == 1) {
+                thresholds[lo] = trial.run(rngs[lo]);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new TrialTask(trial, rngs, thresholds, lo, mid),
+                      new TrialTask(trial, rngs, thresholds, mid, hi));
+        }
+    }
+
+    // Percolation trials on an n-by-n grid.
+    private static Trial gridTrial(int n) {
+        return rng -> runTrial(n, new SiteOrder(n * n, rng));
+    }
+
+    // Site or bond percolation trials on lattice.
+    private static Trial latticeTrial(Lattice lattice, boolean bonds) {
+        return rng -> {
+            LatticePercolation p = new LatticePercolation(lattice, bonds);
+            SiteOrder order = new SiteOrder(p.elements(), rng);
+            int[] batch = new int[lattice.side()];
+
+            while (!p.percolates()) {
+                int count = order.fill(batch);
+                p.openInOrder(batch, 0, count);
+            }
+
+            return ((double) p.numberOfOpen()) / p.elements();
+        };
+    }
+
+    // One trial: open sites in the given order until the grid percolates and
+    // return the fraction of sites that ended up open.
+    private static double runTrial(int n, SiteOrder order) {
+        Percolation p = new Percolation(n);
+        int[] batch = new int[n];
+
+        while (!p.percolates()) {
+            int count = order.fill(batch);
+            p.openInOrder(batch, 0, count);
+        }
+
+        return ((double) p.numberOfOpenSites()) / ((double) n * n);
+    }
+
+    // number of trials run
+    public int trials() {
+        return trials;
     }
 
     // sample mean of percolation threshold
@@ -55,12 +314,93 @@ public class PercolationStats {
     }
 
     // test client (see below)
+    //
+    // Usage: PercolationStats n trials [seed [threads]]
+    //        PercolationStats -adaptive n width maxTrials seed [threads [checkpoint]]
+    //        PercolationStats -lattice square|cubic site|bond n trials seed [threads]
+    //        PercolationStats -lattice-check
+    //
+    // Giving a seed switches to the parallel engine.  threads defaults to the
+    // number of available processors.
     public static void main(String[] args) {
+        if (args[0].equals("-adaptive")) {
+            int n = Integer.parseInt(args[1]);
+            double width = Double.parseDouble(args[2]);
+            int maxTrials = Integer.parseInt(args[3]);
+            long seed = Long.parseLong(args[4]);
+            int threads = args.length > 5
+                ? Integer.parseInt(args[5])
+                : Runtime.getRuntime().availableProcessors();
+            String checkpoint = args.length > 6 ? args[6] : null;
+
+            PercolationStats ps = new PercolationStats(n, width, maxTrials, seed, threads, checkpoint);
+
+            StdOut.printf("trials                   = %d\n", ps.trials());
+            print(ps);
+            return;
+        }
+
+        if (args[0].equals("-lattice-check")) {
+            latticeCheck();
+            return;
+        }
+
+        if (args[0].equals("-lattice")) {
+            int n = Integer.parseInt(args[3]);
+            Lattice lattice = args[1].equals("cubic") ? Lattice.cubic(n) : Lattice.square(n);
+            boolean bonds = args[2].equals("bond");
+            int trials = Integer.parseInt(args[4]);
+            long seed = Long.parseLong(args[5]);
+            int threads = args.length > 6
+                ? Integer.parseInt(args[6])
+                : Runtime.getRuntime().availableProcessors();
+
+            print(new PercolationStats(lattice, bonds, trials, seed, threads));
+            return;
+        }
+
         int n = Integer.parseInt(args[0]);
         int trials = Integer.parseInt(args[1]);
 
-        PercolationStats ps = new PercolationStats(n, trials);
+        PercolationStats ps;
+
+        if (args.length > 2) {
+            long seed = Long.parseLong(args[2]);
+            int threads = args.length > 3
+                ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+
+            ps = new PercolationStats(n, trials, seed, threads);
+        } else {
+            ps = new PercolationStats(n, trials);
+        }
+
+        print(ps);
+    }
+
+    // Sanity checks for the lattice constructor on the smallest lattices,
+    // where the answers are known: one site has threshold 1, and one site has
+    // no bonds at all, which has to be turned down up front rather than fail
+    // inside the pool.
+    private static void latticeCheck() {
+        for (Lattice lattice: new Lattice[] { Lattice.square(1), Lattice.cubic(1) }) {
+            double site = new PercolationStats(lattice, false, 4, 1, 2).mean();
+            StdOut.printf("%dD side 1, sites: threshold %f (expect 1)\n", lattice.dimensions(), site);
+
+            try {
+                new PercolationStats(lattice, true, 4, 1, 2);
+                StdOut.printf("%dD side 1, bonds: accepted (expected IllegalArgumentException)\n",
+                              lattice.dimensions());
+            } catch (IllegalArgumentException e) {
+                StdOut.printf("%dD side 1, bonds: %s\n", lattice.dimensions(), e.getMessage());
+            }
+        }
+
+        double bond = new PercolationStats(Lattice.square(2), true, 1000, 1, 2).mean();
+        StdOut.printf("2D side 2, bonds: threshold %f\n", bond);
+    }
 
+    private static void print(PercolationStats ps) {
         StdOut.printf("mean                     = %f\n", ps.mean());
         StdOut.printf("stddev                   = %f\n", ps.stddev());
 
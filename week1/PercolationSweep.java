@@ -0,0 +1,243 @@
+import edu.princeton.cs.algs4.StdOut;
+
+// Newman-Ziff style sweep over the whole occupation range.
+//
+// Instead of opening random sites until the grid percolates (which is all
+// PercolationStats needs), each trial opens the sites of one random
+// permutation in order and records the observables after every single open.
+// Averaging those over trials gives the observables as a function of the
+// number of open sites k, from which the curve at any occupation fraction p
+// follows by weighting with the binomial distribution -- so one O(N) pass per
+// trial covers every p at once.
+//
+// The union-find is the same weighted quick-union that Percolation uses, but
+// kept inline so we can see the component sizes and attach "touches top" and
+// "touches bottom" flags to each root instead of using dummy nodes.
+public class PercolationSweep {
+
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+
+    private final int n;
+    private final int siteCount;
+    private final int trials;
+
+    // Indexed by the number of open sites k, 0..siteCount.  These hold sums
+    // over all trials; divide by trials to get the averages.
+    private final double[] percolating;
+    private final double[] clusterSize;
+
+    // Per-trial scratch, reused between trials.
+    private final int[] order;
+    private final int[] parent;
+    private final int[] size;
+    private final byte[] flags;
+
+    // run trials sweeps on an n-by-n grid, seeding the permutations from seed
+    public PercolationSweep(int n, int trials, long seed) {
+        this(n, trials, RandomSource.splittable(seed));
+    }
+
+    // run trials sweeps on an n-by-n grid, drawing the permutations from rng
+    public PercolationSweep(int n, int trials, RandomSource rng) {
+        if (n <= 0 || trials <= 0)
+            throw new IllegalArgumentException("Invalid argument");
+
+        this.n = n;
+        this.siteCount = n * n;
+        this.trials = trials;
+
+        percolating = new double[siteCount + 1];
+        clusterSize = new double[siteCount + 1];
+
+        order = new int[siteCount];
+        parent = new int[siteCount];
+        size = new int[siteCount];
+        flags = new byte[siteCount];
+
+        for (int t = 0; t < trials; t++) {
+            sweep(rng);
+        }
+    }
+
+    // One trial: open every site in a random order and add the observables
+    // seen after each open into the running sums.
+    private void sweep(RandomSource rng) {
+        for (int i = 0; i < siteCount; i++) {
+            order[i] = i;
+            parent[i] = -1;     // -1 means blocked.
+        }
+
+        // Fisher-Yates.
+        for (int i = siteCount - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        boolean percolated = false;
+
+        // Sum over clusters of size^2.  Divided by the number of open sites
+        // this is the average size of the cluster a random open site is in.
+        long sumSquares = 0;
+
+        for (int k = 1; k <= siteCount; k++) {
+            int site = order[k - 1];
+            int row = site / n;
+            int col = site % n;
+
+            parent[site] = site;
+            size[site] = 1;
+            flags[site] = 0;
+            if (row == 0)
+                flags[site] |= TOP;
+            if (row == n - 1)
+                flags[site] |= BOTTOM;
+            sumSquares += 1;
+
+            if (row > 0)
+                sumSquares += union(site, site - n);
+            if (row < n - 1)
+                sumSquares += union(site, site + n);
+            if (col > 0)
+                sumSquares += union(site, site - 1);
+            if (col < n - 1)
+                sumSquares += union(site, site + 1);
+
+            if (!percolated && flags[find(site)] == (TOP | BOTTOM))
+                percolated = true;
+
+            if (percolated)
+                percolating[k] += 1;
+            clusterSize[k] += (double) sumSquares / k;
+        }
+    }
+
+    // Union site with neighbour if the neighbour is open.  Returns the change
+    // in the sum of squared cluster sizes.
+    private long union(int site, int neighbour) {
+        if (parent[neighbour] == -1)
+            return 0;
+
+        int a = find(site);
+        int b = find(neighbour);
+        if (a == b)
+            return 0;
+
+        long sa = size[a], sb = size[b];
+
+        if (size[a] < size[b]) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+        parent[b] = a;
+        size[a] += size[b];
+        flags[a] |= flags[b];
+
+        return 2 * sa * sb;
+    }
+
+    private int find(int site) {
+        while (parent[site] != site) {
+            parent[site] = parent[parent[site]];    // Path halving.
+            site = parent[site];
+        }
+        return site;
+    }
+
+    // number of sites in the grid
+    public int sites() {
+        return siteCount;
+    }
+
+    // fraction of trials that percolated with exactly k sites open
+    public double percolationProbability(int k) {
+        validate(k);
+        return percolating[k] / trials;
+    }
+
+    // average size of the cluster containing a random open site, with exactly
+    // k sites open
+    public double meanClusterSize(int k) {
+        validate(k);
+        return clusterSize[k] / trials;
+    }
+
+    // probability that the grid percolates when each site is open with
+    // probability p
+    public double percolationProbability(double p) {
+        return convolve(percolating, p);
+    }
+
+    // average size of the cluster containing a random open site when each site
+    // is open with probability p
+    public double meanClusterSize(double p) {
+        return convolve(clusterSize, p);
+    }
+
+    private void validate(int k) {
+        if (k < 0 || k > siteCount)
+            throw new IllegalArgumentException("k must be between 0 and " + siteCount);
+    }
+
+    // Sum of sums[k] * B(siteCount, k, p) over k, divided by trials.
+    //
+    // The binomial weights are built outwards from the mode with the ratio
+    // B(k+1)/B(k) = (N-k)/(k+1) * p/(1-p), and we stop each side once the
+    // terms stop mattering.  Everything is relative to the mode's weight so
+    // nothing underflows; we normalise by the total at the end.
+    private double convolve(double[] sums, double p) {
+        if (p < 0.0 || p > 1.0)
+            throw new IllegalArgumentException("p must be between 0 and 1");
+
+        if (p == 0.0)
+            return sums[0] / trials;
+        if (p == 1.0)
+            return sums[siteCount] / trials;
+
+        final double cutoff = 1e-16;
+        int mode = (int) Math.floor((siteCount + 1) * p);
+        if (mode > siteCount)
+            mode = siteCount;
+
+        double ratio = p / (1.0 - p);
+        double total = 1.0;
+        double acc = sums[mode];
+
+        double w = 1.0;
+        for (int k = mode; k < siteCount && w > cutoff; k++) {
+            w *= (double) (siteCount - k) / (k + 1) * ratio;
+            total += w;
+            acc += w * sums[k + 1];
+        }
+
+        w = 1.0;
+        for (int k = mode; k > 0 && w > cutoff; k--) {
+            w *= (double) k / (siteCount - k + 1) / ratio;
+            total += w;
+            acc += w * sums[k - 1];
+        }
+
+        return acc / total / trials;
+    }
+
+    // Usage: PercolationSweep n trials [seed]
+    //
+    // Prints the percolation probability and mean cluster size for p from
+    // 0.50 to 0.70.
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        PercolationSweep sweep = new PercolationSweep(n, trials, seed);
+
+        for (int i = 50; i <= 70; i++) {
+            double p = i / 100.0;
+            StdOut.printf("p = %.2f  P(percolates) = %f  mean cluster size = %f\n",
+                          p, sweep.percolationProbability(p), sweep.meanClusterSize(p));
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import java.util.Arrays;
+
+// Percolation that can undo opens, for "what if these sites opened too?"
+// questions.
+//
+// The union-find is union by rank *without* path compression, so every open
+// changes only a handful of entries -- the site's own open bit and flags, and
+// for each union one parent pointer plus the surviving root's rank and flags.
+// Each of those changes is pushed onto an undo log.  checkpoint() just notes
+// how long the log is, and rollback() pops entries back off to that point, so
+// undoing k opens costs O(k) and trying them costs O(k log n).
+//
+// Roots carry "touches top" and "touches bottom" flags as in
+// CompactPercolation, so there are no dummy sites to worry about.  Site ids are
+// zero-based and row-major (row * n + col), as handed out by SiteOrder.
+public class RollbackPercolation {
+
+    // Layout of a meta byte: the low 5 bits are the rank, then the two flags.
+    private static final int RANK_MASK = 0x1f;
+    private static final byte TOP = 0x20;
+    private static final byte BOTTOM = 0x40;
+
+    // Marks an undo log entry for an open rather than a union.
+    private static final int OPENED = -1;
+
+    private final int n;
+    private final int[] parent;
+    private final byte[] meta;
+    private final long[] open;
+    private int openCount;
+
+    // Undo log, three ints per entry:
+    //   site, OPENED, 0          for an open
+    //   child, root, old meta    for a union that linked child under root
+    private int[] log = new int[48];
+    private int logSize;
+
+    // Log size at the point the system started percolating, or -1 if it
+    // doesn't.
+    private int percolatedAt = -1;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public RollbackPercolation(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be a positive number");
+        }
+        if ((long) n * n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("n is too big: " + n);
+        }
+
+        this.n = n;
+        parent = new int[n * n];
+        meta = new byte[n * n];
+        open = new long[(n * n + 63) >>> 6];
+
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(int row, int col) {
+        validate(row, col);
+
+        openSite((row - 1) * n + (col - 1));
+    }
+
+    // Returns a mark that rollback() can later return the grid to.
+    public int checkpoint() {
+        return logSize;
+    }
+
+    // Undoes every open since checkpoint was taken.
+    public void rollback(int checkpoint) {
+        if (checkpoint < 0 || checkpoint > logSize || checkpoint % 3 != 0)
+            throw new IllegalArgumentException("Invalid checkpoint");
+
+        while (logSize > checkpoint) {
+            logSize -= 3;
+            int a = log[logSize];
+            int b = log[logSize + 1];
+
+            if (b == OPENED) {
+                open[a >>> 6] &= ~(1L << a);
+                meta[a] = 0;
+                --openCount;
+            } else {
+                parent[a] = a;
+                meta[b] = (byte) log[logSize + 2];
+            }
+        }
+
+        if (percolatedAt > logSize)
+            percolatedAt = -1;
+    }
+
+    // Would the system percolate if the given sites opened as well?  The grid
+    // is left as it was.
+    public boolean wouldPercolate(int[] siteIds) {
+        int mark = checkpoint();
+
+        for (int k = 0; k < siteIds.length && !percolates(); k++) {
+            openSite(checkSiteId(siteIds[k]));
+        }
+        boolean result = percolates();
+
+        rollback(mark);
+        return result;
+    }
+
+    // The smallest k such that opening siteIds[0..k] would make the system
+    // percolate, or -1 if opening all of them wouldn't.  If it percolates
+    // already, that's 0.  The grid is left as it was.
+    //
+    // This is a binary search that keeps the prefix found not to percolate
+    // open and only rolls back the half that went too far, so the whole search
+    // opens O(siteIds.length) sites rather than replaying from the start every
+    // time.
+    public int criticalIndex(int[] siteIds) {
+        if (percolates())
+            return siteIds.length == 0 ? -1 : 0;
+
+        int start = checkpoint();
+
+        // siteIds[0..lo) are open and don't percolate; opening siteIds[0..hi]
+        // would (hi == length means we don't know of any such prefix yet).
+        int lo = 0, hi = siteIds.length;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int mark = checkpoint();
+
+            for (int k = lo; k <= mid; k++) {
+                openSite(checkSiteId(siteIds[k]));
+            }
+
+            if (percolates()) {
+                rollback(mark);
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+
+        rollback(start);
+        return hi == siteIds.length ? -1 : hi;
+    }
+
+    private int checkSiteId(int id) {
+        if (id < 0 || id >= parent.length)
+            throw new IllegalArgumentException("Invalid site id: " + id);
+        return id;
+    }
+
+    private void openSite(int site) {
+        if (isOpenSite(site))
+            return;
+
+        open[site >>> 6] |= 1L << site;
+        ++openCount;
+        push(site, OPENED, 0);
+
+        int i = site / n, j = site % n;
+
+        if (i == 0)
+            meta[site] |= TOP;
+        if (i == n - 1)
+            meta[site] |= BOTTOM;
+
+        if (i > 0 && isOpenSite(site - n))
+            union(site, site - n);
+        if (i < n - 1 && isOpenSite(site + n))
+            union(site, site + n);
+        if (j > 0 && isOpenSite(site - 1))
+            union(site, site - 1);
+        if (j < n - 1 && isOpenSite(site + 1))
+            union(site, site + 1);
+
+        if (percolatedAt < 0 && (meta[find(site)] & (TOP | BOTTOM)) == (TOP | BOTTOM))
+            percolatedAt = logSize;
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b)
+            return;
+
+        int rankA = meta[a] & RANK_MASK;
+        int rankB = meta[b] & RANK_MASK;
+
+        // Make a the root that survives.
+        if (rankA < rankB) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        push(b, a, meta[a]);
+
+        parent[b] = a;
+        int flags = (meta[a] | meta[b]) & (TOP | BOTTOM);
+        int rank = Math.max(rankA, rankB);
+        if (rankA == rankB)
+            ++rank;
+        meta[a] = (byte) (flags | rank);
+    }
+
+    // No path compression: it would have to be undone too.
+    private int find(int site) {
+        while (parent[site] != site) {
+            site = parent[site];
+        }
+        return site;
+    }
+
+    private void push(int a, int b, int c) {
+        if (logSize + 3 > log.length)
+            log = Arrays.copyOf(log, log.length * 2);
+
+        log[logSize++] = a;
+        log[logSize++] = b;
+        log[logSize++] = c;
+    }
+
+    private boolean isOpenSite(int site) {
+        return (open[site >>> 6] & (1L << site)) != 0;
+    }
+
+    private void validate(int row, int col) {
+        if (row <= 0 || row > n || col <= 0 || col > n) {
+            throw new IllegalArgumentException("row and col must be between 1 and " + n);
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        validate(row, col);
+
+        return isOpenSite((row - 1) * n + (col - 1));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        validate(row, col);
+
+        int site = (row - 1) * n + (col - 1);
+        return isOpenSite(site) && (meta[find(site)] & TOP) != 0;
+    }
+
+    // returns the number of open sites
+    public int numberOfOpenSites() {
+        return openCount;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolatedAt >= 0;
+    }
+}
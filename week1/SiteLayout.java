@@ -0,0 +1,125 @@
+// Where each site of an n-by-n grid lives in the flat arrays of a union-find.
+//
+// Row-major order (row * n + col) puts a site's left and right neighbours next
+// to it but its upper and lower neighbours a whole row away, which on big grids
+// means a cache miss for every vertical union.  The other layouts keep nearby
+// sites nearby in both directions:
+//
+//  - tiled: the grid is cut into square tiles stored one after the other, each
+//    tile row-major inside.  Only sites on a tile edge have far neighbours.
+//
+//  - morton: Z-order, i.e. the bits of row and col interleaved.  Locality at
+//    every scale, but the side is padded up to a power of two, so it can need
+//    up to 4 times the slots of the other layouts.
+//
+// Rows and columns here are zero-based.
+public abstract class SiteLayout {
+
+    protected final int n;
+
+    protected SiteLayout(int n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be a positive number");
+        this.n = n;
+    }
+
+    // the grid is side-by-side
+    public int side() {
+        return n;
+    }
+
+    // The slot for the site at row i, column j.
+    public abstract int index(int i, int j);
+
+    // How many slots the arrays need; at least n * n.
+    public abstract int capacity();
+
+    // row * n + col
+    public static SiteLayout rowMajor(int n) {
+        return new RowMajor(n);
+    }
+
+    // square tiles of side tile, which must be a power of two
+    public static SiteLayout tiled(int n, int tile) {
+        return new Tiled(n, tile);
+    }
+
+    // Z-order
+    public static SiteLayout morton(int n) {
+        return new Morton(n);
+    }
+
+    private static void checkCapacity(long slots) {
+        if (slots > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Grid too big for this layout");
+    }
+
+    private static class RowMajor extends SiteLayout {
+        RowMajor(int n) {
+            super(n);
+            checkCapacity((long) n * n);
+        }
+
+        public int index(int i, int j) {
+            return i * n + j;
+        }
+
+        public int capacity() {
+            return n * n;
+        }
+    }
+
+    private static class Tiled extends SiteLayout {
+        private final int shift;        // log2(tile)
+        private final int mask;         // tile - 1
+        private final int tilesPerRow;
+
+        Tiled(int n, int tile) {
+            super(n);
+            if (tile <= 0 || Integer.bitCount(tile) != 1)
+                throw new IllegalArgumentException("tile must be a power of two");
+
+            shift = Integer.numberOfTrailingZeros(tile);
+            mask = tile - 1;
+            tilesPerRow = (n + mask) >>> shift;
+            checkCapacity((long) tilesPerRow * tilesPerRow << (2 * shift));
+        }
+
+        public int index(int i, int j) {
+            int tileIndex = (i >>> shift) * tilesPerRow + (j >>> shift);
+            return (tileIndex << (2 * shift)) | ((i & mask) << shift) | (j & mask);
+        }
+
+        public int capacity() {
+            return tilesPerRow * tilesPerRow << (2 * shift);
+        }
+    }
+
+    private static class Morton extends SiteLayout {
+        private final int side;     // n rounded up to a power of two.
+
+        Morton(int n) {
+            super(n);
+            side = Integer.highestOneBit(n) == n ? n : Integer.highestOneBit(n) << 1;
+            checkCapacity((long) side * side);
+        }
+
+        public int index(int i, int j) {
+            return (spread(i) << 1) | spread(j);
+        }
+
+        public int capacity() {
+            return side * side;
+        }
+
+        // Put a zero bit between each of the low 16 bits of x.
+        private static int spread(int x) {
+            x &= 0xffff;
+            x = (x | (x << 8)) & 0x00ff00ff;
+            x = (x | (x << 4)) & 0x0f0f0f0f;
+            x = (x | (x << 2)) & 0x33333333;
+            x = (x | (x << 1)) & 0x55555555;
+            return x;
+        }
+    }
+}
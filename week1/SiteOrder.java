@@ -0,0 +1,64 @@
+import java.util.NoSuchElementException;
+
+// A random opening order for the sites of a grid.
+//
+// This is a Fisher-Yates shuffle of the site ids 0..siteCount-1 that is done
+// lazily: each call to next() does one more step of the shuffle, so we only pay
+// for as many sites as actually get opened (a trial usually stops around 59%),
+// and every site handed out is one that hasn't been handed out before -- unlike
+// drawing random (row, col) pairs, where near the threshold a good chunk of the
+// draws land on sites that are already open.
+//
+// Site ids are row-major and zero-based: id = row * n + col.
+public class SiteOrder {
+
+    private final int[] sites;
+    private final RandomSource rng;
+    private int next;       // sites[0..next) are already handed out.
+
+    // random opening order over siteCount sites, drawing from StdRandom
+    public SiteOrder(int siteCount) {
+        this(siteCount, RandomSource.std());
+    }
+
+    // random opening order over siteCount sites, drawing from rng
+    public SiteOrder(int siteCount, RandomSource rng) {
+        if (siteCount <= 0)
+            throw new IllegalArgumentException("siteCount must be a positive number");
+
+        this.rng = rng;
+        sites = new int[siteCount];
+        for (int i = 0; i < siteCount; i++) {
+            sites[i] = i;
+        }
+    }
+
+    // are there sites left?
+    public boolean hasNext() {
+        return next < sites.length;
+    }
+
+    // the next site in the order
+    public int next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        // One step of Fisher-Yates: pick from the part not handed out yet.
+        int j = next + rng.nextInt(sites.length - next);
+        int result = sites[j];
+        sites[j] = sites[next];
+        sites[next] = result;
+
+        ++next;
+        return result;
+    }
+
+    // Fill buf with the next sites in the order.  Returns how many were
+    // written, which is less than buf.length only when the order runs out.
+    public int fill(int[] buf) {
+        int count = 0;
+        while (count < buf.length && hasNext()) {
+            buf[count++] = next();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,246 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// Checks whether a fixed n-by-n site configuration percolates, reading it one
+// row at a time so that memory grows with n rather than n^2.
+//
+// The input is n rows of n bytes each, row-major from the top row down; a
+// non-zero byte is an open site.
+//
+// This is Hoshen-Kopelman cluster labelling.  Each row's open sites get
+// labels, merged with the labels of the row above through a small union-find.
+// Once a row is done, any cluster from the row above that didn't carry on into
+// it can never grow again, so its size goes into the statistics and its label
+// is dropped.  The surviving labels are renumbered 0..k-1, so the union-find
+// never holds more than one row's worth of old labels plus one row's worth of
+// new ones.
+public class StreamingPercolation {
+
+    private final int n;
+
+    private boolean percolates;
+    private long openSites;
+    private long clusters;
+    private long largestCluster;
+    private double sumSquares;      // Sum over clusters of size^2.
+
+    // Labels of the previous row (-1 for blocked) and the size and "touches
+    // top" flag of each of those labels.
+    private int[] prevLabel;
+    private long[] prevSize;
+    private boolean[] prevTop;
+    private int prevCount;
+
+    // Scratch for the row being processed.  Ids 0..prevCount-1 are the
+    // previous row's labels; new clusters starting in this row come after.
+    private int[] curLabel;
+    private int[] parent;
+    private long[] size;
+    private boolean[] top;
+    private boolean[] present;      // Root has a site in the current row.
+    private int[] renumber;
+
+    // reads an n-by-n grid from the named file
+    public StreamingPercolation(String filename, int n) {
+        this(open(filename), n);
+    }
+
+    // reads an n-by-n grid from channel
+    public StreamingPercolation(ReadableByteChannel channel, int n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be a positive number");
+
+        this.n = n;
+
+        prevLabel = new int[n];
+        prevSize = new long[n];
+        prevTop = new boolean[n];
+        curLabel = new int[n];
+
+        // At most n/2 + 1 clusters per row, from each of two rows.
+        int maxIds = n + 2;
+        parent = new int[maxIds];
+        size = new long[maxIds];
+        top = new boolean[maxIds];
+        present = new boolean[maxIds];
+        renumber = new int[maxIds];
+
+        Arrays.fill(prevLabel, -1);
+
+        ByteBuffer row = ByteBuffer.allocate(n);
+
+        try (ReadableByteChannel in = channel) {
+            for (int r = 0; r < n; r++) {
+                row.clear();
+                while (row.hasRemaining()) {
+                    if (in.read(row) < 0)
+                        throw new EOFException("Grid ends after " + r + " full rows");
+                }
+
+                processRow(row.array(), r);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Whatever is left in the bottom row is finished too.
+        for (int l = 0; l < prevCount; l++) {
+            finishCluster(prevSize[l]);
+        }
+    }
+
+    private static ReadableByteChannel open(String filename) {
+        try {
+            return FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void processRow(byte[] sites, int r) {
+        for (int l = 0; l < prevCount; l++) {
+            parent[l] = l;
+            size[l] = prevSize[l];
+            top[l] = prevTop[l];
+            present[l] = false;
+        }
+        int ids = prevCount;
+
+        // Label this row, joining up with the row above.
+        for (int c = 0; c < n; c++) {
+            if (sites[c] == 0) {
+                curLabel[c] = -1;
+                continue;
+            }
+
+            ++openSites;
+
+            int label;
+            if (c > 0 && curLabel[c - 1] >= 0) {
+                label = curLabel[c - 1];
+            } else {
+                label = ids++;
+                parent[label] = label;
+                size[label] = 0;
+                top[label] = r == 0;
+                present[label] = false;
+            }
+
+            if (prevLabel[c] >= 0)
+                label = union(label, prevLabel[c]);
+
+            size[find(label)] += 1;
+            curLabel[c] = label;
+        }
+
+        for (int c = 0; c < n; c++) {
+            if (curLabel[c] >= 0)
+                present[find(curLabel[c])] = true;
+        }
+
+        // Clusters that didn't reach this row are done.  Everything else gets
+        // a fresh compact label.
+        int count = 0;
+        for (int id = 0; id < ids; id++) {
+            if (find(id) != id)
+                continue;
+
+            if (!present[id]) {
+                finishCluster(size[id]);
+                continue;
+            }
+
+            renumber[id] = count;
+            prevSize[count] = size[id];
+            prevTop[count] = top[id];
+            ++count;
+        }
+        prevCount = count;
+
+        for (int c = 0; c < n; c++) {
+            prevLabel[c] = curLabel[c] < 0 ? -1 : renumber[find(curLabel[c])];
+        }
+
+        if (r == n - 1) {
+            for (int l = 0; l < prevCount; l++) {
+                if (prevTop[l])
+                    percolates = true;
+            }
+        }
+    }
+
+    // Returns the surviving root.
+    private int union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b)
+            return a;
+
+        parent[b] = a;
+        size[a] += size[b];
+        top[a] |= top[b];
+        return a;
+    }
+
+    private int find(int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];    // Path halving.
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private void finishCluster(long clusterSize) {
+        ++clusters;
+        sumSquares += (double) clusterSize * clusterSize;
+        if (clusterSize > largestCluster)
+            largestCluster = clusterSize;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // returns the number of open sites
+    public long numberOfOpenSites() {
+        return openSites;
+    }
+
+    // returns the number of clusters of open sites
+    public long numberOfClusters() {
+        return clusters;
+    }
+
+    // returns the number of sites in the biggest cluster
+    public long largestCluster() {
+        return largestCluster;
+    }
+
+    // average size of the cluster containing a random open site
+    public double meanClusterSize() {
+        if (openSites == 0)
+            return 0.0;
+        return sumSquares / openSites;
+    }
+
+    // Usage: StreamingPercolation file n
+    public static void main(String[] args) {
+        StreamingPercolation sp = new StreamingPercolation(args[0], Integer.parseInt(args[1]));
+
+        StdOut.printf("percolates        = %b\n", sp.percolates());
+        StdOut.printf("open sites        = %d\n", sp.numberOfOpenSites());
+        StdOut.printf("clusters          = %d\n", sp.numberOfClusters());
+        StdOut.printf("largest cluster   = %d\n", sp.largestCluster());
+        StdOut.printf("mean cluster size = %f\n", sp.meanClusterSize());
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.SplittableRandom;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// A random permutation of 0..size-1 that takes O(1) memory: get(i) works out
+// where i goes on the fly instead of looking it up in a shuffled array.
+//
+// It's a small block cipher.  Numbers are split into two halves of half bits
+// each and put through a number of Feistel rounds, each keyed with its own
+// random key.  A Feistel network is a bijection whatever the round function
+// is, so this permutes 0..2^(2*half)-1.  To get down to 0..size-1,
+// cycle-walk: if the result is out of range, encrypt it again until it isn't.
+// That is still a bijection on 0..size-1, and since 2^(2*half) < 4 * size it
+// takes under four steps on average.
+//
+// The domain is long, so the same class serves SpillingRandomizedQueue's
+// billions of items; for 2^62 < size the two halves are 32 bits each and the
+// block is the full 64 bits, compared unsigned.
+//
+// A cipher isn't a uniformly random pick out of all size! permutations, and
+// on tiny domains it shows: with halves of a bit or two, where i lands was
+// off by up to 10 standard deviations over a million permutations of 5
+// elements.  So up to SMALL_SIZE elements there's no cipher at all, just an
+// int[] shuffled by Fisher-Yates, which is exactly uniform and still a
+// constant amount of memory.  Above that every half has at least 4 bits, and
+// the narrower halves (up to 8 bits) get twice the rounds, since each round
+// mixes in so little.  Run main to measure.
+public class FeistelPermutation {
+
+    // Up to this size, shuffle a table instead.
+    private static final int SMALL_SIZE = 64;
+
+    private static final int ROUNDS = 8;
+    private static final int NARROW_ROUNDS = 16;
+    private static final int NARROW_HALF = 8;
+
+    private final long size;
+    private final int half;     // Bits in each half.
+    private final long mask;    // Low half bits set.
+    private final long[] keys;
+    private final int[] table;  // The whole permutation, for small sizes.
+
+    // permutation of 0..size-1 determined by seed
+    public FeistelPermutation(long size, long seed) {
+        if (size < 0)
+            throw new IllegalArgumentException("size must not be negative");
+
+        this.size = size;
+
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(size - 1, 1));
+        half = (bits + 1) / 2;
+        mask = (1L << half) - 1;
+
+        if (size <= SMALL_SIZE) {
+            table = new int[(int) size];
+            keys = null;
+
+            SplittableRandom rng = new SplittableRandom(seed);
+            for (int i = 0; i < table.length; i++) {
+                int j = rng.nextInt(i + 1);
+                table[i] = table[j];
+                table[j] = i;
+            }
+            return;
+        }
+
+        table = null;
+        keys = new long[half <= NARROW_HALF ? NARROW_ROUNDS : ROUNDS];
+
+        // Spread the seed into round keys with splitmix64.
+        long s = seed;
+        for (int r = 0; r < keys.length; r++) {
+            s += 0x9e3779b97f4a7c15L;
+            keys[r] = mix64(s);
+        }
+    }
+
+    // number of elements permuted
+    public long size() {
+        return size;
+    }
+
+    // where i goes, for 0 <= i < size; size must fit in an int
+    public int get(int i) {
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalStateException("size is too big for int indices: " + size);
+
+        return (int) get((long) i);
+    }
+
+    // where i goes, for 0 <= i < size
+    public long get(long i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("index " + i + " out of range for size " + size);
+
+        if (table != null)
+            return table[(int) i];
+
+        long x = i;
+        do {
+            x = encrypt(x);
+        } while (Long.compareUnsigned(x, size) >= 0);
+        return x;
+    }
+
+    private long encrypt(long x) {
+        long left = x >>> half;
+        long right = x & mask;
+
+        for (long key: keys) {
+            long next = left ^ (mix64(right ^ key) & mask);
+            left = right;
+            right = next;
+        }
+
+        return (left << half) | right;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // Usage: FeistelPermutation trials size...
+    //
+    // For each size, counts where every i lands over the given number of
+    // random permutations and compares that with uniform: the chi-square
+    // statistic over the size-by-size table (as a z-score against its
+    // (size-1)^2 degrees of freedom) and the largest single-cell z-score.
+    // Both should look like noise: |z| of a few at most for the chi-square,
+    // and around 4 or 5 at most for the biggest of the cells.
+    public static void main(String[] args) {
+        int trials = Integer.parseInt(args[0]);
+        SplittableRandom seeds = new SplittableRandom(1);
+
+        for (int a = 1; a < args.length; a++) {
+            int n = Integer.parseInt(args[a]);
+            long[][] counts = new long[n][n];
+
+            for (int t = 0; t < trials; t++) {
+                FeistelPermutation p = new FeistelPermutation(n, seeds.nextLong());
+                for (int i = 0; i < n; i++) {
+                    ++counts[i][p.get(i)];
+                }
+            }
+
+            double expected = (double) trials / n;
+            double sd = Math.sqrt(expected * (1 - 1.0 / n));
+            double chi2 = 0;
+            double maxZ = 0;
+            for (long[] row: counts) {
+                for (long c: row) {
+                    chi2 += (c - expected) * (c - expected) / expected;
+                    maxZ = Math.max(maxZ, Math.abs(c - expected) / sd);
+                }
+            }
+
+            double df = (double) (n - 1) * (n - 1);
+            StdOut.printf("size %5d: chi2 = %10.1f, df = %8.0f, z = %5.1f, max cell z = %4.1f\n",
+                          n, chi2, df, (chi2 - df) / Math.sqrt(2 * df), maxZ);
+        }
+    }
+}
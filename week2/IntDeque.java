@@ -0,0 +1,130 @@
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+// RingDeque specialised for ints: the same circular array, but an int[] so
+// nothing gets boxed.  forEach() walks the items with no allocation at all.
+public class IntDeque {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] items;
+    private int head;       // Index of the first item.
+    private int size;
+    private int modCount;
+
+    // construct an empty deque
+    public IntDeque() {
+        items = new int[MIN_CAPACITY];
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return size;
+    }
+
+    // add the item to the front
+    public void addFirst(int item) {
+        if (size == items.length)
+            resize(items.length * 2);
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+
+        ++size;
+        ++modCount;
+    }
+
+    // add the item to the back
+    public void addLast(int item) {
+        if (size == items.length)
+            resize(items.length * 2);
+
+        items[(head + size) & (items.length - 1)] = item;
+
+        ++size;
+        ++modCount;
+    }
+
+    // remove and return the item from the front
+    public int removeFirst() {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        int result = items[head];
+        head = (head + 1) & (items.length - 1);
+
+        --size;
+        ++modCount;
+        shrink();
+        return result;
+    }
+
+    // remove and return the item from the back
+    public int removeLast() {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        int result = items[(head + size - 1) & (items.length - 1)];
+
+        --size;
+        ++modCount;
+        shrink();
+        return result;
+    }
+
+    private void shrink() {
+        if (items.length > MIN_CAPACITY && size <= items.length / 4)
+            resize(items.length / 2);
+    }
+
+    private void resize(int capacity) {
+        int[] newItems = new int[capacity];
+
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, size - firstPart);
+
+        items = newItems;
+        head = 0;
+    }
+
+    // pass each item to action, front to back
+    public void forEach(IntConsumer action) {
+        int expectedModCount = modCount;
+
+        for (int i = 0; i < size; i++) {
+            action.accept(items[(head + i) & (items.length - 1)]);
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    private class IntDequeIterator implements PrimitiveIterator.OfInt {
+        private int index;
+        private final int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        public int nextInt() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+
+            return items[(head + index++) & (items.length - 1)];
+        }
+    }
+
+    // return an iterator over items in order from front to back
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntDequeIterator();
+    }
+}
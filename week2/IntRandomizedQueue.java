@@ -0,0 +1,109 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+// RandomizedQueue specialised for ints, backed by an int[] so nothing gets
+// boxed.
+public class IntRandomizedQueue {
+
+    private int[] queue;
+    private int end;  // This is *one past* the last item.
+    private final RandomSource rng;
+
+    // construct an empty randomized queue
+    public IntRandomizedQueue() {
+        this(RandomSource.std());
+    }
+
+    // construct an empty randomized queue that draws from rng
+    public IntRandomizedQueue(RandomSource rng) {
+        if (rng == null)
+            throw new IllegalArgumentException("rng must not be null");
+
+        queue = new int[10];
+        end = 0;
+        this.rng = rng;
+    }
+
+    // is the randomized queue empty?
+    public boolean isEmpty() {
+        return end == 0;
+    }
+
+    // return the number of items on the randomized queue
+    public int size() {
+        return end;
+    }
+
+    // add the item
+    public void enqueue(int item) {
+        if (end == queue.length)
+            realloc(queue.length * 2);
+
+        queue[end++] = item;
+    }
+
+    // remove and return a random item
+    public int dequeue() {
+        if (end == 0)
+            throw new NoSuchElementException();
+
+        int chosen = rng.nextInt(end);
+
+        int result = queue[chosen];
+        queue[chosen] = queue[--end];
+
+        if (queue.length > 10 && end <= queue.length / 4)
+            realloc(queue.length / 2);
+
+        return result;
+    }
+
+    // return a random item (but do not remove it)
+    public int sample() {
+        if (end == 0)
+            throw new NoSuchElementException();
+
+        return queue[rng.nextInt(end)];
+    }
+
+    private void realloc(int newsize) {
+        int[] newq = new int[newsize];
+        System.arraycopy(queue, 0, newq, 0, end);
+        queue = newq;
+    }
+
+    // Pass every item to action, in random order.
+    //
+    // Same FeistelPermutation walk as the iterator, so it leaves the array
+    // (and any live iterators) alone and allocates nothing per item.
+    public void forEach(IntConsumer action) {
+        FeistelPermutation order = new FeistelPermutation(end, rng.nextLong());
+
+        for (int i = 0; i < order.size(); i++) {
+            action.accept(queue[order.get(i)]);
+        }
+    }
+
+    // Walks the items in the order of a FeistelPermutation of the indices, as
+    // RandomizedQueue's iterator does.
+    private class IntRandomizedQueueIterator implements PrimitiveIterator.OfInt {
+        private final FeistelPermutation order = new FeistelPermutation(end, rng.nextLong());
+        private int next;
+
+        public boolean hasNext() {
+            return next < order.size();
+        }
+
+        public int nextInt() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            return queue[order.get(next++)];
+        }
+    }
+
+    // return an independent iterator over items in random order
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntRandomizedQueueIterator();
+    }
+}
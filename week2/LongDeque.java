@@ -0,0 +1,130 @@
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+// RingDeque specialised for longs: the same circular array, but a long[] so
+// nothing gets boxed.  forEach() walks the items with no allocation at all.
+public class LongDeque {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] items;
+    private int head;       // Index of the first item.
+    private int size;
+    private int modCount;
+
+    // construct an empty deque
+    public LongDeque() {
+        items = new long[MIN_CAPACITY];
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return size;
+    }
+
+    // add the item to the front
+    public void addFirst(long item) {
+        if (size == items.length)
+            resize(items.length * 2);
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+
+        ++size;
+        ++modCount;
+    }
+
+    // add the item to the back
+    public void addLast(long item) {
+        if (size == items.length)
+            resize(items.length * 2);
+
+        items[(head + size) & (items.length - 1)] = item;
+
+        ++size;
+        ++modCount;
+    }
+
+    // remove and return the item from the front
+    public long removeFirst() {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        long result = items[head];
+        head = (head + 1) & (items.length - 1);
+
+        --size;
+        ++modCount;
+        shrink();
+        return result;
+    }
+
+    // remove and return the item from the back
+    public long removeLast() {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        long result = items[(head + size - 1) & (items.length - 1)];
+
+        --size;
+        ++modCount;
+        shrink();
+        return result;
+    }
+
+    private void shrink() {
+        if (items.length > MIN_CAPACITY && size <= items.length / 4)
+            resize(items.length / 2);
+    }
+
+    private void resize(int capacity) {
+        long[] newItems = new long[capacity];
+
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, size - firstPart);
+
+        items = newItems;
+        head = 0;
+    }
+
+    // pass each item to action, front to back
+    public void forEach(LongConsumer action) {
+        int expectedModCount = modCount;
+
+        for (int i = 0; i < size; i++) {
+            action.accept(items[(head + i) & (items.length - 1)]);
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    private class LongDequeIterator implements PrimitiveIterator.OfLong {
+        private int index;
+        private final int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        public long nextLong() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+
+            return items[(head + index++) & (items.length - 1)];
+        }
+    }
+
+    // return an iterator over items in order from front to back
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongDequeIterator();
+    }
+}
@@ -1,9 +1,42 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 
 // Reads a list of lines from stdin (until EOF) and then outputs a random selection of args[0] of them to stdout.
+//
+// Usage: Permutation k [--stream [file]]
+//
+// With --stream, only k items are ever held in memory: the input (the file,
+// or stdin) is read in big blocks straight off a channel and run through
+// reservoir sampling, so memory is O(k) however big the input is.
 public class Permutation {
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
     public static void main(String[] args) {
+        int k = Integer.parseInt(args[0]);
+
+        if (args.length > 1 && args[1].equals("--stream")) {
+            ReadableByteChannel in = args.length > 2
+                ? openFile(args[2])
+                : Channels.newChannel(System.in);
+
+            for (String s: sample(in, k, RandomSource.std())) {
+                StdOut.printf("%s\n", s);
+            }
+            return;
+        }
+
         RandomizedQueue<String> q = new RandomizedQueue<>();
 
         while (!StdIn.isEmpty()) {
@@ -11,12 +44,151 @@ public class Permutation {
             q.enqueue(s);
         }
 
-        int k = Integer.parseInt(args[0]);
-
         while (k-- != 0) {
             StdOut.printf("%s\n", q.dequeue());
+        }
+    }
+
+    private static ReadableByteChannel openFile(String filename) {
+        try {
+            return FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Pick k of the whitespace separated items read from in, uniformly at
+    // random, and return them in random order (fewer than k if the input runs
+    // out first).  Closes in.
+    //
+    // This is Li's Algorithm L.  Rather than drawing a random number for every
+    // item to decide whether it replaces something in the reservoir, it works
+    // out how many items to skip before the next replacement, which is
+    // O(k log(N/k)) random draws for N items.  Skipped items are never even
+    // turned into Strings: the tokenizer only decodes the bytes of an item
+    // that's going into the reservoir.
+    static String[] sample(ReadableByteChannel in, int k, RandomSource rng) {
+        if (k < 0)
+            throw new IllegalArgumentException("k must not be negative");
+
+        // Nothing can ever go in the reservoir, so don't bother reading.
+        if (k == 0) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new String[0];
+        }
+
+        String[] reservoir = new String[k];
+        long count = 0;             // Items seen so far.
+        double w = Math.exp(Math.log(random(rng)) / k);
+        long nextTake = k + skip(w, rng);   // Index of the next item to go in.
+
+        ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        byte[] bytes = buf.array();
 
-            k -= 1;
+        // An item split across two reads is carried over in here.
+        byte[] carry = new byte[64];
+        int carryLen = 0;
+        boolean inToken = false;
+
+        try (ReadableByteChannel channel = in) {
+            while (true) {
+                buf.clear();
+                int read = channel.read(buf);
+                if (read < 0)
+                    break;
+
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    boolean space = isSpace(bytes[i]);
+
+                    if (!inToken && !space) {
+                        inToken = true;
+                        start = i;
+                    } else if (inToken && space) {
+                        inToken = false;
+
+                        if (count < k || count == nextTake) {
+                            String item = decode(carry, carryLen, bytes, start, i);
+                            if (count < k) {
+                                reservoir[(int) count] = item;
+                            } else {
+                                reservoir[rng.nextInt(k)] = item;
+                                w *= Math.exp(Math.log(random(rng)) / k);
+                                nextTake = count + 1 + skip(w, rng);
+                            }
+                        }
+                        carryLen = 0;
+                        ++count;
+                    }
+                }
+
+                // Item still going at the end of the block: keep its bytes
+                // if there's any chance it'll be taken.
+                if (inToken && (count < k || count == nextTake)) {
+                    int len = read - start;
+                    if (carryLen + len > carry.length)
+                        carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carryLen + len));
+                    System.arraycopy(bytes, start, carry, carryLen, len);
+                    carryLen += len;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // The input might not end with whitespace.
+        if (inToken) {
+            if (count < k) {
+                reservoir[(int) count] = decode(carry, carryLen, bytes, 0, 0);
+            } else if (count == nextTake) {
+                reservoir[rng.nextInt(k)] = decode(carry, carryLen, bytes, 0, 0);
+            }
+            ++count;
+        }
+
+        String[] result = count < k ? Arrays.copyOf(reservoir, (int) count) : reservoir;
+
+        // The first k items went in in input order, so shuffle.
+        for (int i = result.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            String tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
         }
+
+        return result;
+    }
+
+    // How many items to pass over before the next one goes in the reservoir.
+    private static long skip(double w, RandomSource rng) {
+        double s = Math.floor(Math.log(random(rng)) / Math.log1p(-w));
+        return s >= Long.MAX_VALUE / 2 ? Long.MAX_VALUE / 2 : (long) s;
+    }
+
+    // Uniform in (0, 1): never 0, so it's safe to take the log.
+    private static double random(RandomSource rng) {
+        double u;
+        do {
+            u = rng.nextDouble();
+        } while (u == 0.0);
+        return u;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0b;
+    }
+
+    // The carried over bytes followed by bytes[from..to), as UTF-8.
+    private static String decode(byte[] carry, int carryLen, byte[] bytes, int from, int to) {
+        if (carryLen == 0)
+            return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+
+        byte[] all = Arrays.copyOf(carry, carryLen + to - from);
+        System.arraycopy(bytes, from, all, carryLen, to - from);
+        return new String(all, StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,186 @@
+import java.util.SplittableRandom;
+
+import edu.princeton.cs.algs4.StdRandom;
+
+// Where the random numbers come from.
+//
+// StdRandom is one generator shared by the whole program: everything that
+// draws from it contends on it, and nothing can be replayed on its own.  A
+// RandomSource is handed to each object that needs randomness when it's built,
+// and split() hands out independent generators for other instances or
+// threads, so parallel users never share one and every stream replays from its
+// seed.
+//
+// std() keeps the old StdRandom behaviour; splittable() and xoshiro() are the
+// fast, seedable ones.
+public interface RandomSource {
+
+    // uniform int in [0, bound)
+    int nextInt(int bound);
+
+    // uniform long
+    long nextLong();
+
+    // uniform double in [0, 1)
+    double nextDouble();
+
+    // A new, independent generator.  Splitting is deterministic: the same
+    // seed split the same way gives the same streams.
+    RandomSource split();
+
+    // draws from StdRandom
+    static RandomSource std() {
+        return new Std();
+    }
+
+    // java.util.SplittableRandom seeded with seed
+    static RandomSource splittable(long seed) {
+        return new Splittable(new SplittableRandom(seed));
+    }
+
+    // xoshiro256** seeded with seed
+    static RandomSource xoshiro(long seed) {
+        return new Xoshiro256StarStar(seed);
+    }
+
+    final class Std implements RandomSource {
+        public int nextInt(int bound) {
+            return StdRandom.uniformInt(bound);
+        }
+
+        public long nextLong() {
+            long result = 0;
+            for (int i = 0; i < 4; i++) {
+                result = (result << 16) | StdRandom.uniformInt(1 << 16);
+            }
+            return result;
+        }
+
+        public double nextDouble() {
+            return StdRandom.uniformDouble();
+        }
+
+        // StdRandom can't be split, so seed a SplittableRandom off it.
+        public RandomSource split() {
+            return splittable(nextLong());
+        }
+    }
+
+    final class Splittable implements RandomSource {
+        private final SplittableRandom rng;
+
+        Splittable(SplittableRandom rng) {
+            this.rng = rng;
+        }
+
+        public int nextInt(int bound) {
+            return rng.nextInt(bound);
+        }
+
+        public long nextLong() {
+            return rng.nextLong();
+        }
+
+        public double nextDouble() {
+            return rng.nextDouble();
+        }
+
+        public RandomSource split() {
+            return new Splittable(rng.split());
+        }
+    }
+
+    // Blackman and Vigna's xoshiro256**: 256 bits of state, a few shifts and
+    // xors per number.  Splitting hands the current state to the new generator
+    // and jumps this one 2^128 steps ahead, so the two streams can't overlap.
+    final class Xoshiro256StarStar implements RandomSource {
+        private static final long[] JUMP = {
+            0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL,
+            0xa9582618e03fc9aaL, 0x39abdc4529b1661cL
+        };
+
+        private long s0, s1, s2, s3;
+
+        Xoshiro256StarStar(long seed) {
+            // Fill the state with splitmix64, as the authors recommend, so it
+            // can't come out all zero.
+            s0 = splitmix(seed += 0x9e3779b97f4a7c15L);
+            s1 = splitmix(seed += 0x9e3779b97f4a7c15L);
+            s2 = splitmix(seed += 0x9e3779b97f4a7c15L);
+            s3 = splitmix(seed + 0x9e3779b97f4a7c15L);
+        }
+
+        private Xoshiro256StarStar(long s0, long s1, long s2, long s3) {
+            this.s0 = s0;
+            this.s1 = s1;
+            this.s2 = s2;
+            this.s3 = s3;
+        }
+
+        private static long splitmix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        public long nextLong() {
+            long result = Long.rotateLeft(s1 * 5, 7) * 9;
+            long t = s1 << 17;
+
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+
+            return result;
+        }
+
+        // Lemire's multiply-and-reject: unbiased, and almost never loops.
+        public int nextInt(int bound) {
+            if (bound <= 0)
+                throw new IllegalArgumentException("bound must be positive");
+
+            long m = (nextLong() >>> 32) * bound;
+            if ((m & 0xffffffffL) < bound) {
+                long threshold = (1L << 32) % bound;
+                while ((m & 0xffffffffL) < threshold) {
+                    m = (nextLong() >>> 32) * bound;
+                }
+            }
+            return (int) (m >>> 32);
+        }
+
+        public double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        public RandomSource split() {
+            RandomSource child = new Xoshiro256StarStar(s0, s1, s2, s3);
+            jump();
+            return child;
+        }
+
+        private void jump() {
+            long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+
+            for (long word: JUMP) {
+                for (int b = 0; b < 64; b++) {
+                    if ((word & (1L << b)) != 0) {
+                        t0 ^= s0;
+                        t1 ^= s1;
+                        t2 ^= s2;
+                        t3 ^= s3;
+                    }
+                    nextLong();
+                }
+            }
+
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+        }
+    }
+}
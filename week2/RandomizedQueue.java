@@ -1,18 +1,30 @@
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.StdOut;
 
 public class RandomizedQueue<Item> implements Iterable<Item> {
 
+    private static final int MIN_CAPACITY = 10;
+
     private Item[] queue;
     private int end;  // This is *one past* the last item.
+    private final RandomSource rng;
 
     // construct an empty randomized queue
     public RandomizedQueue() {
-        queue = (Item[]) new Object[10];
+        this(RandomSource.std());
+    }
+
+    // construct an empty randomized queue that draws from rng
+    public RandomizedQueue(RandomSource rng) {
+        if (rng == null)
+            throw new IllegalArgumentException("rng must not be null");
+
+        queue = (Item[]) new Object[MIN_CAPACITY];
         end = 0;
+        this.rng = rng;
     }
 
     // is the randomized queue empty?
@@ -43,23 +55,26 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         realloc(queue.length * 2);
     }
 
+    // Halve the array while it's at most a quarter full.  After a single
+    // dequeue that's one halving at most; after a batch it can be several,
+    // but they're worked out first so there's still only one realloc().
+    // Never goes below MIN_CAPACITY, or an empty queue would shrink its array
+    // to nothing and upsize() couldn't double it again.
     private void downsize() {
-        if (end > queue.length / 4)
-            return;
-        
-        realloc(queue.length / 2);
+        int newsize = queue.length;
+        while (newsize / 2 >= MIN_CAPACITY && end <= newsize / 4) {
+            newsize /= 2;
+        }
+
+        if (newsize != queue.length)
+            realloc(newsize);
     }
 
     // Resize the queue to the provided size.  Copies the existing one into a
     // new array and discards the old one.
     private void realloc(int newsize) {
         Item[] newq = (Item[]) new Object[newsize];
-
-        // Could use System.arraycopy() here maybe?
-        for (int i = 0; i < size(); i++) {
-            newq[i] = queue[i];
-        }
-
+        System.arraycopy(queue, 0, newq, 0, size());
         queue = newq;
     }
     
@@ -68,7 +83,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (size() == 0)
             throw new NoSuchElementException();
         
-        int chosen = StdRandom.uniformInt(0, size());
+        int chosen = rng.nextInt(size());
         
         Item result = queue[chosen];
         queue[chosen] = queue[end-1];
@@ -85,29 +100,129 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (size() == 0)
             throw new NoSuchElementException();
 
-        return queue[StdRandom.uniformInt(0, size())];
+        return queue[rng.nextInt(size())];
+    }
+
+    // Remove k random items and put them in out[0..k).
+    //
+    // This is one partial Fisher-Yates pass: each step swaps a random item
+    // from the part not yet picked into the tail of the array, so after k
+    // steps the tail holds k items chosen uniformly without replacement, in
+    // random order.  Then it's one arraycopy into out and at most one resize.
+    public void dequeue(int k, Item[] out) {
+        if (k < 0 || k > size())
+            throw new IllegalArgumentException("k must be between 0 and " + size());
+        if (out.length < k)
+            throw new IllegalArgumentException("out must have room for " + k + " items");
+
+        shuffleTail(k);
+
+        System.arraycopy(queue, end - k, out, 0, k);
+        Arrays.fill(queue, end - k, end, null);
+        end -= k;
+
+        downsize();
+    }
+
+    // Put k distinct random items in out[0..k) (but do not remove them).
+    //
+    // This mustn't move anything in queue[], since live iterators find items
+    // by position.  If k is a good fraction of the queue, copy the items into
+    // a scratch array and run dequeue(k, out)'s partial Fisher-Yates pass on
+    // the copy.  Otherwise copying everything would cost more than the draws,
+    // so pick k distinct indices with Floyd's algorithm, remembering them in
+    // an open-addressed int[] set, and then shuffle out[0..k) so the order is
+    // random too.  Neither way boxes anything.
+    public void sample(int k, Item[] out) {
+        if (k < 0 || k > size())
+            throw new IllegalArgumentException("k must be between 0 and " + size());
+        if (out.length < k)
+            throw new IllegalArgumentException("out must have room for " + k + " items");
+
+        int n = size();
+
+        if (4L * k >= n) {
+            Item[] copy = Arrays.copyOf(queue, n);
+            for (int i = 0; i < k; i++) {
+                int last = n - 1 - i;
+                int chosen = rng.nextInt(last + 1);
+
+                Item tmp = copy[chosen];
+                copy[chosen] = copy[last];
+                copy[last] = tmp;
+            }
+            System.arraycopy(copy, n - k, out, 0, k);
+            return;
+        }
+
+        // Holds index + 1, with 0 for an empty slot; at most half full.
+        int[] picked = new int[Integer.highestOneBit(Math.max(2 * k, 1) * 2 - 1)];
+        int mask = picked.length - 1;
+
+        // Floyd: for each j, take a random index up to j, or j itself if
+        // that one's already taken.
+        for (int j = n - k, m = 0; j < n; j++, m++) {
+            int chosen = rng.nextInt(j + 1);
+            if (!addIndex(picked, mask, chosen)) {
+                chosen = j;
+                addIndex(picked, mask, chosen);
+            }
+            out[m] = queue[chosen];
+        }
+
+        for (int i = k - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            Item tmp = out[i];
+            out[i] = out[j];
+            out[j] = tmp;
+        }
+    }
+
+    // Add index to the set, returning false if it was already there.
+    private static boolean addIndex(int[] set, int mask, int index) {
+        int h = index * 0x9e3779b9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (set[slot] != 0) {
+            if (set[slot] == index + 1)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        set[slot] = index + 1;
+        return true;
     }
 
+    // Move k uniformly chosen items, in random order, into queue[end-k..end).
+    private void shuffleTail(int k) {
+        for (int i = 0; i < k; i++) {
+            int last = end - 1 - i;
+            int chosen = rng.nextInt(last + 1);
+
+            Item tmp = queue[chosen];
+            queue[chosen] = queue[last];
+            queue[last] = tmp;
+        }
+    }
+
+    // Walks the items in the order of a FeistelPermutation of the indices, so
+    // an iterator costs O(1) memory however big the queue is, and each
+    // iterator gets its own random order.
     private class RandomizedQueueIterator implements Iterator<Item> {
 
-        private RandomizedQueue<Integer> helperq;
+        private final FeistelPermutation order;
+        private int next;
         
         public RandomizedQueueIterator() {
-            helperq = new RandomizedQueue<>();
-
-            for (int i = 0; i < size(); i++) {
-                helperq.enqueue(i);
-            }
+            order = new FeistelPermutation(size(), rng.nextLong());
         }
 
         public boolean hasNext() {
-            return helperq.size() != 0;
+            return next < order.size();
         }
 
         public Item next() {
             if (!hasNext()) throw new NoSuchElementException();
 
-            return queue[helperq.dequeue()];
+            return queue[order.get(next++)];
         }
     }
 
@@ -0,0 +1,79 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Turns items into fixed-width records and back, so that
+// SpillingRandomizedQueue can keep them in a file and find record i at
+// offset i * width().
+public interface RecordCodec<Item> {
+
+    // bytes per record
+    int width();
+
+    // write item into buf[offset..offset+width())
+    void encode(Item item, ByteBuffer buf, int offset);
+
+    // read the item at buf[offset..offset+width())
+    Item decode(ByteBuffer buf, int offset);
+
+    // 4-byte ints
+    static RecordCodec<Integer> ints() {
+        return new RecordCodec<Integer>() {
+            public int width() {
+                return Integer.BYTES;
+            }
+
+            public void encode(Integer item, ByteBuffer buf, int offset) {
+                buf.putInt(offset, item);
+            }
+
+            public Integer decode(ByteBuffer buf, int offset) {
+                return buf.getInt(offset);
+            }
+        };
+    }
+
+    // 8-byte longs
+    static RecordCodec<Long> longs() {
+        return new RecordCodec<Long>() {
+            public int width() {
+                return Long.BYTES;
+            }
+
+            public void encode(Long item, ByteBuffer buf, int offset) {
+                buf.putLong(offset, item);
+            }
+
+            public Long decode(ByteBuffer buf, int offset) {
+                return buf.getLong(offset);
+            }
+        };
+    }
+
+    // Strings of up to maxBytes bytes of UTF-8: a 2-byte length and then the
+    // bytes, padded out to the full width.
+    static RecordCodec<String> strings(int maxBytes) {
+        if (maxBytes <= 0 || maxBytes > 0xffff)
+            throw new IllegalArgumentException("maxBytes must be between 1 and 65535");
+
+        return new RecordCodec<String>() {
+            public int width() {
+                return 2 + maxBytes;
+            }
+
+            public void encode(String item, ByteBuffer buf, int offset) {
+                byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > maxBytes)
+                    throw new IllegalArgumentException("String is longer than " + maxBytes + " bytes");
+
+                buf.putShort(offset, (short) bytes.length);
+                buf.put(offset + 2, bytes);
+            }
+
+            public String decode(ByteBuffer buf, int offset) {
+                byte[] bytes = new byte[buf.getShort(offset) & 0xffff];
+                buf.get(offset + 2, bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// Same API as Deque, but stored in a circular array instead of a linked list
+// of Nodes.  No per-item allocation, and iterating walks memory in order.
+//
+// The capacity is always a power of two so wrapping an index round is a mask
+// rather than a modulo.  The array doubles when full and halves when it drops
+// to a quarter full -- not at half, or a deque sitting right at the boundary
+// would resize on every add and remove.
+public class RingDeque<Item> implements Iterable<Item> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private Item[] items;
+    private int head;       // Index of the first item.
+    private int size;
+    private int modCount;   // Bumped by every change, for the fail-fast iterator.
+
+    // construct an empty deque
+    public RingDeque() {
+        items = newArray(MIN_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Item[] newArray(int capacity) {
+        return (Item[]) new Object[capacity];
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return size;
+    }
+
+    // add the item to the front
+    public void addFirst(Item item) {
+        if (item == null)
+            throw new IllegalArgumentException("Item cannot be null");
+
+        if (size == items.length)
+            resize(items.length * 2);
+
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+
+        ++size;
+        ++modCount;
+    }
+
+    // add the item to the back
+    public void addLast(Item item) {
+        if (item == null)
+            throw new IllegalArgumentException("Item cannot be null");
+
+        if (size == items.length)
+            resize(items.length * 2);
+
+        items[(head + size) & (items.length - 1)] = item;
+
+        ++size;
+        ++modCount;
+    }
+
+    // remove and return the item from the front
+    public Item removeFirst() {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        Item result = items[head];
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+
+        --size;
+        ++modCount;
+        shrink();
+        return result;
+    }
+
+    // remove and return the item from the back
+    public Item removeLast() {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        int last = (head + size - 1) & (items.length - 1);
+        Item result = items[last];
+        items[last] = null;
+
+        --size;
+        ++modCount;
+        shrink();
+        return result;
+    }
+
+    private void shrink() {
+        if (items.length > MIN_CAPACITY && size <= items.length / 4)
+            resize(items.length / 2);
+    }
+
+    // Copy the items into a new array of the given capacity, unwrapping them
+    // so the first item ends up at index 0.
+    private void resize(int capacity) {
+        Item[] newItems = newArray(capacity);
+
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, newItems, 0, firstPart);
+        System.arraycopy(items, 0, newItems, firstPart, size - firstPart);
+
+        items = newItems;
+        head = 0;
+    }
+
+    // return an iterator over items in order from front to back
+    private class RingDequeIterator implements Iterator<Item> {
+        private int index;
+        private final int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        public Item next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+
+            return items[(head + index++) & (items.length - 1)];
+        }
+    }
+
+    public Iterator<Item> iterator() {
+        return new RingDequeIterator();
+    }
+
+    // unit testing
+    public static void main(String[] args) {
+        RingDeque<Integer> d = new RingDeque<>();
+
+        for (int i = 0; i < 10; i++) {
+            d.addFirst(i);
+            d.addLast(100 + i);
+        }
+
+        for (int i = 0; i < 15; i++) {
+            d.removeLast();
+        }
+
+        for (Integer j: d) {
+            StdOut.printf("%d\n", j);
+        }
+    }
+}
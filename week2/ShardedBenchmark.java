@@ -0,0 +1,86 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// Throughput of ShardedRandomizedQueue against a RandomizedQueue behind one
+// lock.
+//
+// Each thread starts with some items of its own on the queue and then does
+// opsPerThread rounds of enqueue followed by dequeue, so the queue stays about
+// the same size throughout.  Reports operations per second for 1, 2, 4, ...
+// threads up to the given count.
+//
+// Usage: ShardedBenchmark threads [opsPerThread]
+public class ShardedBenchmark {
+
+    // The operations both queues are driven through.
+    private interface Queue {
+        void enqueue(Integer item);
+        Integer poll();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Integer.parseInt(args[0]);
+        int ops = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        for (int t = 1; t <= threads; t *= 2) {
+            RandomizedQueue<Integer> single = new RandomizedQueue<>();
+            run("synchronized", t, ops, new Queue() {
+                public synchronized void enqueue(Integer item) {
+                    single.enqueue(item);
+                }
+
+                public synchronized Integer poll() {
+                    return single.isEmpty() ? null : single.dequeue();
+                }
+            });
+
+            ShardedRandomizedQueue<Integer> sharded = new ShardedRandomizedQueue<>(t, RandomSource.splittable(t));
+            run("sharded", t, ops, new Queue() {
+                public void enqueue(Integer item) {
+                    sharded.enqueue(item);
+                }
+
+                public Integer poll() {
+                    return sharded.poll();
+                }
+            });
+        }
+    }
+
+    private static void run(String name, int threads, int ops, Queue queue) throws InterruptedException {
+        LongAdder done = new LongAdder();
+        CountDownLatch go = new CountDownLatch(1);
+        Integer item = 42;
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    queue.enqueue(item);
+                }
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < ops; j++) {
+                    queue.enqueue(item);
+                    queue.poll();
+                }
+                done.add(2L * ops);
+            });
+            workers[i].start();
+        }
+
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread t: workers) {
+            t.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        StdOut.printf("%-12s %2d threads: %12.0f ops/sec\n", name, threads, done.sum() / seconds);
+    }
+}
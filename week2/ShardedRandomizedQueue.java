@@ -0,0 +1,135 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A RandomizedQueue that many threads can enqueue to and dequeue from at once.
+//
+// One RandomizedQueue behind one lock makes every thread wait for every other
+// one.  Here the items are spread over several shards instead, each a
+// RandomizedQueue with its own lock and its own split of the RandomSource.
+// Each thread is given a home shard the first time it touches the queue, and
+// enqueue() always goes there, so producers on different shards never meet.
+//
+// dequeue() looks at two shards chosen at random and takes a random item from
+// the fuller one ("power of two choices").  Favouring the fuller shard keeps
+// the shards close to the same size, and when they're the same size a random
+// shard and then a random item within it is a uniform pick overall -- so the
+// output stays close to uniform even if one producer is much busier than the
+// rest.  If both shards turn out to be empty it goes round all of them once
+// before giving up.
+//
+// size() and isEmpty() are only a snapshot: other threads may change the
+// queue before the answer is used.  Hence poll(), which returns null rather
+// than throwing when there's nothing to take.
+public class ShardedRandomizedQueue<Item> {
+
+    private final Shard<Item>[] shards;
+
+    private final AtomicInteger nextHome = new AtomicInteger();
+    private final ThreadLocal<Shard<Item>> home;
+
+    // A RandomizedQueue and its lock.  size is kept outside the lock so that
+    // dequeue() can compare shards without taking either.
+    private static class Shard<Item> {
+        final RandomizedQueue<Item> items;
+        volatile int size;
+
+        Shard(RandomSource rng) {
+            items = new RandomizedQueue<>(rng);
+        }
+    }
+
+    // construct an empty queue with one shard per processor
+    public ShardedRandomizedQueue() {
+        this(Runtime.getRuntime().availableProcessors(), RandomSource.std());
+    }
+
+    // construct an empty queue with the given number of shards, each drawing
+    // from its own split of rng
+    @SuppressWarnings("unchecked")
+    public ShardedRandomizedQueue(int shardCount, RandomSource rng) {
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("shardCount must be a positive number");
+        if (rng == null)
+            throw new IllegalArgumentException("rng must not be null");
+
+        shards = (Shard<Item>[]) new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>(rng.split());
+        }
+
+        // Hand out home shards round robin.
+        home = ThreadLocal.withInitial(
+            () -> shards[Math.floorMod(nextHome.getAndIncrement(), shards.length)]);
+    }
+
+    // is the queue empty?
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // return the number of items on the queue
+    public int size() {
+        int total = 0;
+        for (Shard<Item> s: shards) {
+            total += s.size;
+        }
+        return total;
+    }
+
+    // add the item to the calling thread's shard
+    public void enqueue(Item item) {
+        if (item == null)
+            throw new IllegalArgumentException("Item must not be null");
+
+        Shard<Item> s = home.get();
+        synchronized (s) {
+            s.items.enqueue(item);
+            s.size = s.items.size();
+        }
+    }
+
+    // remove and return a random item
+    public Item dequeue() {
+        Item result = poll();
+        if (result == null)
+            throw new NoSuchElementException();
+        return result;
+    }
+
+    // remove and return a random item, or null if the queue is empty
+    public Item poll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(shards.length);
+        int b = random.nextInt(shards.length);
+        int first = shards[a].size >= shards[b].size ? a : b;
+
+        Item result = take(shards[first]);
+        if (result != null)
+            return result;
+
+        // Most likely the whole queue is (nearly) empty.  Go round the rest
+        // from a random starting point, so that no shard is always tried last.
+        int start = random.nextInt(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            result = take(shards[(start + i) % shards.length]);
+            if (result != null)
+                return result;
+        }
+        return null;
+    }
+
+    private Item take(Shard<Item> s) {
+        if (s.size == 0)
+            return null;
+
+        synchronized (s) {
+            if (s.items.isEmpty())
+                return null;
+
+            Item result = s.items.dequeue();
+            s.size = s.items.size();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// A RandomizedQueue for more items than fit in the heap.
+//
+// At most memoryBudget items are kept on the heap, in a fixed size array that
+// never grows -- so unlike RandomizedQueue there's no moment where the old and
+// the doubled array are both alive.  When that array fills up, its contents
+// are appended to a segment: a memory-mapped temporary file of fixed-width
+// records (see RecordCodec), and the array starts over empty.  The OS keeps
+// as much of the segments in memory as it can spare and pages the rest out.
+//
+// Segments are big (1GB, or one memoryBudget if that's bigger) and spills are
+// packed into them one after another, so the number of segments depends on
+// how many bytes are spilled rather than how many times.  Each file's channel
+// is closed as soon as it's mapped -- the file was deleted the moment it was
+// opened, and the mapping keeps it alive -- so a segment holds no file
+// descriptor, only a mapping.
+//
+// dequeue() and sample() pick uniformly among *all* the items: draw an index
+// in 0..size-1 and find which segment it falls in.  Removing from a segment
+// works like RandomizedQueue: the segment's last record is copied over the
+// chosen one.  Finding the segment is a search of a Fenwick tree over the
+// segments' counts, so it's O(log segments) rather than a walk along them.
+//
+// To keep the number of mappings down while the queue drains, a segment that
+// falls below a quarter full is merged into the segment spills are currently
+// going to (or, if that has no room, becomes that segment itself).  So every
+// segment but that one stays at least a quarter full, and there are never
+// more than about 4 * spilled bytes / 1GB + 1 of them.  A segment that
+// empties is unmapped, which frees its disk space.
+//
+// Iterating doesn't copy anything either: it walks a FeistelPermutation of
+// the global indices.  Don't change the queue while iterating.
+//
+// Call close() when done to delete the files.
+public class SpillingRandomizedQueue<Item> implements Iterable<Item>, AutoCloseable {
+
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    private final RecordCodec<Item> codec;
+    private final int width;
+    private final Path dir;
+    private final RandomSource rng;
+
+    private final Item[] hot;
+    private int hotCount;
+
+    // Spilled segments, with null for a slot whose segment has emptied.
+    // counts is a Fenwick tree over their sizes: counts[k] (1-based) is the
+    // total of slots (k - (k & -k))..k-1.
+    private Segment[] segments = new Segment[4];
+    private long[] counts = new long[segments.length + 1];
+    private int slots;              // segments[0..slots) have been used.
+    private int[] freeSlots = new int[4];
+    private int freeCount;
+
+    private final int segmentCapacity;  // Records per segment.
+    private int tail = -1;              // Slot spills go to, or -1 for none.
+
+    private long size;
+
+    private final byte[] scratch;   // One record, for moving records around.
+
+    // One file of records, count of them in use.
+    private static class Segment {
+        MappedByteBuffer records;
+        int count;
+    }
+
+    // construct an empty queue keeping at most memoryBudget items on the heap,
+    // spilling to the default temporary directory
+    public SpillingRandomizedQueue(RecordCodec<Item> codec, int memoryBudget) {
+        this(codec, memoryBudget, Paths.get(System.getProperty("java.io.tmpdir")), RandomSource.std());
+    }
+
+    // construct an empty queue keeping at most memoryBudget items on the heap,
+    // spilling to files in dir and drawing from rng
+    public SpillingRandomizedQueue(RecordCodec<Item> codec, int memoryBudget, Path dir, RandomSource rng) {
+        this(codec, memoryBudget, dir, rng, SEGMENT_BYTES);
+    }
+
+    // As above, with segments of about segmentBytes each; main uses small ones
+    // to get lots of segments without lots of data.
+    @SuppressWarnings("unchecked")
+    SpillingRandomizedQueue(RecordCodec<Item> codec, int memoryBudget, Path dir, RandomSource rng,
+                            int segmentBytes) {
+        if (codec == null || dir == null || rng == null)
+            throw new IllegalArgumentException("Arguments must not be null");
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("memoryBudget must be a positive number");
+        if ((long) memoryBudget * codec.width() > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("A segment of memoryBudget records must fit in 2GB");
+
+        this.codec = codec;
+        this.width = codec.width();
+        this.dir = dir;
+        this.rng = rng;
+
+        hot = (Item[]) new Object[memoryBudget];
+        scratch = new byte[width];
+        segmentCapacity = Math.max(memoryBudget, segmentBytes / width);
+    }
+
+    // is the queue empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the queue
+    public long size() {
+        return size;
+    }
+
+    // add the item
+    public void enqueue(Item item) {
+        if (item == null)
+            throw new IllegalArgumentException("Item must not be null");
+
+        if (hotCount == hot.length)
+            spill();
+
+        hot[hotCount++] = item;
+        ++size;
+    }
+
+    // Append the whole heap array to the tail segment, starting a new one if
+    // it won't fit, and empty it.
+    private void spill() {
+        if (tail < 0 || segments[tail].count + hotCount > segmentCapacity)
+            tail = newSegment();
+
+        Segment s = segments[tail];
+        for (int i = 0; i < hotCount; i++) {
+            codec.encode(hot[i], s.records, (s.count + i) * width);
+        }
+        s.count += hotCount;
+        addCount(tail, hotCount);
+
+        Arrays.fill(hot, null);
+        hotCount = 0;
+    }
+
+    // Map an empty segment into a free slot and return the slot.
+    private int newSegment() {
+        Segment s = new Segment();
+
+        try {
+            Path file = Files.createTempFile(dir, "rqueue", ".seg");
+            try (FileChannel channel = FileChannel.open(file,
+                                                        StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE,
+                                                        StandardOpenOption.DELETE_ON_CLOSE)) {
+                s.records = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentCapacity * width);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slots == segments.length)
+                growSegments();
+            slot = slots++;
+        }
+        segments[slot] = s;
+        return slot;
+    }
+
+    // remove and return a random item
+    public Item dequeue() {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        long chosen = randomIndex();
+        Item result;
+
+        if (chosen < hotCount) {
+            int i = (int) chosen;
+            result = hot[i];
+            hot[i] = hot[--hotCount];
+            hot[hotCount] = null;
+        } else {
+            long found = locate(chosen - hotCount);
+            int slot = (int) (found >>> 32);
+            int i = (int) found;
+
+            Segment s = segments[slot];
+            result = codec.decode(s.records, i * width);
+
+            int last = --s.count;
+            addCount(slot, -1);
+            if (i != last) {
+                s.records.get(last * width, scratch);
+                s.records.put(i * width, scratch);
+            }
+
+            if (s.count == 0)
+                freeSegment(slot);
+            else if (slot != tail && s.count < segmentCapacity / 4)
+                merge(slot);
+        }
+
+        --size;
+        return result;
+    }
+
+    // return a random item (but do not remove it)
+    public Item sample() {
+        if (size == 0)
+            throw new NoSuchElementException();
+
+        return get(randomIndex());
+    }
+
+    // The item at global index i: the heap array first, then each segment in
+    // slot order.
+    private Item get(long i) {
+        if (i < hotCount)
+            return hot[(int) i];
+
+        long found = locate(i - hotCount);
+        return codec.decode(segments[(int) (found >>> 32)].records, (int) found * width);
+    }
+
+    // Which segment spilled item i is in, and where: the slot in the high 32
+    // bits and the record index in the low 32.  This walks down the Fenwick
+    // tree, taking each step whose subtotal doesn't go past i.
+    private long locate(long i) {
+        int pos = 0;
+        for (int step = Integer.highestOneBit(segments.length); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < counts.length && counts[next] <= i) {
+                pos = next;
+                i -= counts[next];
+            }
+        }
+        return ((long) pos << 32) | i;
+    }
+
+    private void addCount(int slot, long delta) {
+        for (int k = slot + 1; k < counts.length; k += k & -k) {
+            counts[k] += delta;
+        }
+    }
+
+    // Double the slots and rebuild the tree to match.
+    private void growSegments() {
+        segments = Arrays.copyOf(segments, segments.length * 2);
+        counts = new long[segments.length + 1];
+        for (int slot = 0; slot < slots; slot++) {
+            if (segments[slot] != null)
+                addCount(slot, segments[slot].count);
+        }
+    }
+
+    // Move the records of the segment in slot onto the end of the tail
+    // segment and free it.  If the tail hasn't room, slot is at least three
+    // quarters empty, so it becomes the tail instead.
+    private void merge(int slot) {
+        Segment s = segments[slot];
+
+        if (tail < 0 || segments[tail].count + s.count > segmentCapacity) {
+            tail = slot;
+            return;
+        }
+
+        Segment t = segments[tail];
+        t.records.put(t.count * width, s.records, 0, s.count * width);
+        t.count += s.count;
+        addCount(tail, s.count);
+        addCount(slot, -s.count);
+        s.count = 0;
+
+        freeSegment(slot);
+    }
+
+    private void freeSegment(int slot) {
+        closeSegment(segments[slot]);
+        segments[slot] = null;
+        if (slot == tail)
+            tail = -1;
+
+        if (freeCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    // Uniform in 0..size-1.  size can be more than an int, so this is
+    // nextLong() reduced by rejection to avoid modulo bias.
+    private long randomIndex() {
+        long bits, value;
+        do {
+            bits = rng.nextLong() >>> 1;
+            value = bits % size;
+        } while (bits - value + (size - 1) < 0);
+        return value;
+    }
+
+    // Unmap s.  Its file is already deleted, but the blocks stay allocated
+    // until the mapping goes too, and left to itself that only happens when
+    // the buffer is garbage collected.
+    private static void closeSegment(Segment s) {
+        unmap(s.records);
+        s.records = null;
+    }
+
+    // There's no public way to unmap a MappedByteBuffer, so this uses
+    // sun.misc.Unsafe.invokeCleaner() (in jdk.unsupported, which every module
+    // can read).  If that isn't there, the mapping goes whenever the buffer is
+    // collected, as before.  The buffer mustn't be touched afterwards.
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null)
+            return;
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Couldn't unmap buffer", e);
+        }
+    }
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available; fall back to the garbage collector.
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    // Walks a FeistelPermutation of the global indices.
+    private class SpillingIterator implements Iterator<Item> {
+        private final FeistelPermutation order = new FeistelPermutation(size, rng.nextLong());
+        private long next;
+
+        public boolean hasNext() {
+            return next < order.size();
+        }
+
+        public Item next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            return get(order.get(next++));
+        }
+    }
+
+    // return an independent iterator over items in random order
+    public Iterator<Item> iterator() {
+        return new SpillingIterator();
+    }
+
+    // deletes the segment files; the queue can't be used afterwards
+    public void close() {
+        for (int slot = 0; slot < slots; slot++) {
+            if (segments[slot] != null)
+                closeSegment(segments[slot]);
+            segments[slot] = null;
+        }
+        Arrays.fill(counts, 0);
+        slots = 0;
+        freeCount = 0;
+        tail = -1;
+        Arrays.fill(hot, null);
+        hotCount = 0;
+        size = 0;
+    }
+
+    // Usage: SpillingRandomizedQueue items memoryBudget segmentBytes [dir]
+    //
+    // Enqueues the longs 0..items-1 and then dequeues them all, checking that
+    // each comes out exactly once, and prints the most segments there were
+    // alive and the open file descriptors (from /proc/self/fd, where there is
+    // one) at that point.  Run it under a low "ulimit -n" with small segments
+    // to check that segments don't hold on to descriptors: more segments than
+    // the limit has to work.
+    public static void main(String[] args) throws IOException {
+        int items = Integer.parseInt(args[0]);
+        int memoryBudget = Integer.parseInt(args[1]);
+        int segmentBytes = Integer.parseInt(args[2]);
+        Path dir = Paths.get(args.length > 3 ? args[3] : System.getProperty("java.io.tmpdir"));
+
+        try (SpillingRandomizedQueue<Long> q = new SpillingRandomizedQueue<>(
+                 RecordCodec.longs(), memoryBudget, dir, RandomSource.xoshiro(1), segmentBytes)) {
+            for (long i = 0; i < items; i++) {
+                q.enqueue(i);
+            }
+
+            int peakSegments = q.slots - q.freeCount;
+            long fds = openFileDescriptors();
+
+            boolean[] seen = new boolean[items];
+            int minSegments = peakSegments;
+            while (!q.isEmpty()) {
+                int i = (int) (long) q.dequeue();
+                if (seen[i])
+                    throw new IllegalStateException("Dequeued " + i + " twice");
+                seen[i] = true;
+
+                if (q.size() == items / 4)
+                    minSegments = q.slots - q.freeCount;
+            }
+            for (int i = 0; i < items; i++) {
+                if (!seen[i])
+                    throw new IllegalStateException("Never dequeued " + i);
+            }
+
+            StdOut.printf("segments after enqueue:  %d (%d spills)\n", peakSegments, items / memoryBudget);
+            StdOut.printf("open file descriptors:   %d\n", fds);
+            StdOut.printf("segments at 1/4 full:    %d\n", minSegments);
+            StdOut.printf("all %d items dequeued exactly once\n", items);
+        }
+    }
+
+    private static long openFileDescriptors() throws IOException {
+        Path fd = Paths.get("/proc/self/fd");
+        if (!Files.isDirectory(fd))
+            return -1;
+
+        try (Stream<Path> entries = Files.list(fd)) {
+            return entries.count();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.princeton.cs.algs4.StdOut;
+
+// Throughput of WorkStealingDeque and WorkStealingScheduler under contention.
+//
+// The deque test has the owner push items and pop about half of them back
+// while the given number of thieves steal from the front as fast as they can,
+// and reports items taken per second.  The scheduler test spawns a binary tree
+// of tiny recursive tasks and reports tasks run per second for 1, 2, 4, ...
+// workers up to the given count.
+//
+// Usage: StealBenchmark threads [items]
+public class StealBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Integer.parseInt(args[0]);
+        int items = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        for (int thieves = 0; thieves < threads; thieves = thieves == 0 ? 1 : thieves * 2) {
+            dequeContention(thieves, items);
+        }
+
+        for (int workers = 1; workers <= threads; workers *= 2) {
+            schedulerThroughput(workers, 22);
+        }
+    }
+
+    private static void dequeContention(int thieves, int items) throws InterruptedException {
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        LongAdder taken = new LongAdder();
+        AtomicLong remaining = new AtomicLong(items);
+        Integer item = 42;
+
+        Thread[] thieveThreads = new Thread[thieves];
+        for (int i = 0; i < thieves; i++) {
+            thieveThreads[i] = new Thread(() -> {
+                while (remaining.get() > 0) {
+                    if (deque.stealFirst() != null) {
+                        taken.increment();
+                        remaining.decrementAndGet();
+                    }
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread t: thieveThreads) {
+            t.start();
+        }
+
+        for (int i = 0; i < items; i++) {
+            deque.addLast(item);
+            if ((i & 1) == 1 && deque.removeLast() != null) {
+                taken.increment();
+                remaining.decrementAndGet();
+            }
+        }
+        while (remaining.get() > 0) {
+            if (deque.removeLast() != null) {
+                taken.increment();
+                remaining.decrementAndGet();
+            }
+        }
+
+        for (Thread t: thieveThreads) {
+            t.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        StdOut.printf("deque, %2d thieves:     %12.0f items/sec\n", thieves, taken.sum() / seconds);
+    }
+
+    private static void schedulerThroughput(int workers, int depth) {
+        WorkStealingScheduler scheduler = new WorkStealingScheduler(workers);
+        LongAdder leaves = new LongAdder();
+
+        long start = System.nanoTime();
+        scheduler.execute(new Spawn(scheduler, depth, leaves));
+        scheduler.awaitQuiescence();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        scheduler.shutdown();
+
+        long tasks = 2 * leaves.sum() - 1;
+        StdOut.printf("scheduler, %2d workers: %12.0f tasks/sec\n", workers, tasks / seconds);
+    }
+
+    // Splits in two until depth runs out.
+    private static class Spawn implements Runnable {
+        private final WorkStealingScheduler scheduler;
+        private final int depth;
+        private final LongAdder leaves;
+
+        Spawn(WorkStealingScheduler scheduler, int depth, LongAdder leaves) {
+            this.scheduler = scheduler;
+            this.depth = depth;
+            this.leaves = leaves;
+        }
+
+        public void run() {
+            if (depth == 0) {
+                leaves.increment();
+                return;
+            }
+            scheduler.execute(new Spawn(scheduler, depth - 1, leaves));
+            scheduler.execute(new Spawn(scheduler, depth - 1, leaves));
+        }
+    }
+}
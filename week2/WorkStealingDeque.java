@@ -0,0 +1,117 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// A Chase-Lev work-stealing deque.
+//
+// One thread owns the deque and uses it like a stack at the back end:
+// addLast() and removeLast().  Any number of other threads can take items from
+// the front with stealFirst() at the same time.  No locks: the owner's end is
+// plain reads and writes except when it's down to the last item, and thieves
+// take an item by CASing top forward.
+//
+// top and bottom only ever grow; an index maps to a slot of the circular array
+// with a mask.  When the array fills up the owner copies the live items into
+// one twice the size.  A thief still reading the old array is fine, since the
+// old array is never written to again.
+//
+// The owner clears the slots it pops, but a thief can't safely clear the slot
+// it stole from (the owner may already be reusing it), so a stolen item stays
+// reachable until the owner writes over that slot.
+//
+// As with Deque, null items aren't allowed, which frees up null to mean
+// "nothing there".
+public class WorkStealingDeque<Item> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final AtomicLong top = new AtomicLong();
+    private volatile long bottom;
+    private volatile AtomicReferenceArray<Item> items =
+        new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+    // is the deque empty?  Only a snapshot if other threads are using it.
+    public boolean isEmpty() {
+        return bottom <= top.get();
+    }
+
+    // number of items; only a snapshot if other threads are using it
+    public int size() {
+        long size = bottom - top.get();
+        return size < 0 ? 0 : (int) size;
+    }
+
+    // Add the item to the back.  Owner only.
+    public void addLast(Item item) {
+        if (item == null)
+            throw new IllegalArgumentException("Item cannot be null");
+
+        long b = bottom;
+        long t = top.get();
+        AtomicReferenceArray<Item> a = items;
+
+        if (b - t >= a.length()) {
+            a = grow(a, b, t);
+            items = a;
+        }
+
+        a.set((int) b & (a.length() - 1), item);
+        bottom = b + 1;
+    }
+
+    private AtomicReferenceArray<Item> grow(AtomicReferenceArray<Item> a, long b, long t) {
+        AtomicReferenceArray<Item> bigger = new AtomicReferenceArray<>(a.length() * 2);
+
+        for (long i = t; i < b; i++) {
+            bigger.set((int) i & (bigger.length() - 1), a.get((int) i & (a.length() - 1)));
+        }
+        return bigger;
+    }
+
+    // Remove and return the item at the back, or null if there isn't one.
+    // Owner only.
+    public Item removeLast() {
+        long b = bottom - 1;
+        AtomicReferenceArray<Item> a = items;
+
+        // Claim the slot before looking at top, so a thief that reads bottom
+        // after this can't take it too.
+        bottom = b;
+        long t = top.get();
+
+        if (t > b) {
+            bottom = b + 1;     // Was already empty.
+            return null;
+        }
+
+        int slot = (int) b & (a.length() - 1);
+        Item result = a.get(slot);
+
+        if (t == b) {
+            // Last item: race the thieves for it the same way they race each
+            // other.
+            if (!top.compareAndSet(t, t + 1))
+                result = null;
+            bottom = b + 1;
+        }
+
+        if (result != null)
+            a.set(slot, null);
+        return result;
+    }
+
+    // Remove and return the item at the front, or null if the deque is empty
+    // or another thread got to it first.  Any thread.
+    public Item stealFirst() {
+        long t = top.get();
+        long b = bottom;
+        if (t >= b)
+            return null;
+
+        AtomicReferenceArray<Item> a = items;
+        Item result = a.get((int) t & (a.length() - 1));
+
+        if (!top.compareAndSet(t, t + 1))
+            return null;
+        return result;
+    }
+}
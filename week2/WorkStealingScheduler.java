@@ -0,0 +1,145 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// A small fork-join style scheduler on top of WorkStealingDeque.
+//
+// Each worker thread owns a deque.  Tasks submitted from inside a task go on
+// the back of the current worker's deque, and a worker always runs its own
+// newest task first, which keeps a recursive computation depth-first and its
+// data in cache.  A worker with nothing left steals the oldest task from the
+// front of a random other worker's deque -- the oldest tasks tend to be the
+// biggest pieces of work, so one steal goes a long way.  Tasks submitted from
+// outside go through a shared queue.
+public class WorkStealingScheduler {
+
+    // How long an idle worker sleeps before looking for work again.
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final Worker[] workers;
+    private final ConcurrentLinkedQueue<Runnable> submissions = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean shutdown;
+
+    private class Worker extends Thread {
+        final WorkStealingDeque<Runnable> deque = new WorkStealingDeque<>();
+
+        // Each worker picks its victims with its own generator, so idle
+        // workers don't all hammer one shared one.
+        private final SplittableRandom rng;
+
+        Worker(int index) {
+            rng = new SplittableRandom(index);
+            setDaemon(true);
+            setName("work-stealing-worker-" + index);
+        }
+
+        public void run() {
+            while (!shutdown) {
+                Runnable task = findTask();
+                if (task == null) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+        }
+
+        // Own deque first, then outside submissions, then try stealing from
+        // each other worker once, starting at a random one.
+        private Runnable findTask() {
+            Runnable task = deque.removeLast();
+            if (task != null)
+                return task;
+
+            task = submissions.poll();
+            if (task != null)
+                return task;
+
+            int start = rng.nextInt(workers.length);
+            for (int k = 0; k < workers.length; k++) {
+                Worker victim = workers[(start + k) % workers.length];
+                if (victim == this)
+                    continue;
+
+                task = victim.deque.stealFirst();
+                if (task != null)
+                    return task;
+            }
+            return null;
+        }
+
+        WorkStealingScheduler scheduler() {
+            return WorkStealingScheduler.this;
+        }
+    }
+
+    // start a scheduler with the given number of worker threads
+    public WorkStealingScheduler(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be a positive number");
+
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (Worker w: workers) {
+            w.start();
+        }
+    }
+
+    // Run task on some worker.  From inside a task this pushes onto the
+    // current worker's own deque.
+    public void execute(Runnable task) {
+        if (task == null)
+            throw new IllegalArgumentException("Task cannot be null");
+        if (shutdown)
+            throw new IllegalStateException("Scheduler is shut down");
+
+        pending.incrementAndGet();
+
+        Thread current = Thread.currentThread();
+        if (current instanceof Worker && ((Worker) current).scheduler() == this) {
+            ((Worker) current).deque.addLast(task);
+        } else {
+            submissions.add(task);
+        }
+    }
+
+    // Wait until every task submitted so far, and everything they submitted,
+    // has run.  If any of them threw, the first such exception is rethrown
+    // here wrapped in a RuntimeException.
+    public void awaitQuiescence() {
+        while (pending.get() != 0) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+
+        Throwable t = failure.getAndSet(null);
+        if (t != null)
+            throw new RuntimeException("Task failed", t);
+    }
+
+    // stop the workers once they finish what they're running; queued tasks
+    // are dropped
+    public void shutdown() {
+        shutdown = true;
+        for (Worker w: workers) {
+            try {
+                w.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+// FastCollinearPoints without the objects: the points come in as two int
+// arrays and everything per origin happens in a few preallocated arrays.
+//
+// FastCollinearPoints sorts Point objects with p.slopeOrder(), which works
+// out slopeTo() twice per comparison, and then copies and re-sorts every run
+// to find its ends.  Here, for each origin p:
+//
+//   - the slope to every other point is worked out once, into keys[], with
+//     the index of that point alongside it in order[];
+//   - keys[] and order[] are sorted together by a plain 3-way quicksort on
+//     doubles -- no Comparator, no boxing;
+//   - each run of 3 or more equal keys is scanned for its smallest and largest
+//     point, and if p comes before the smallest, (p, largest) is a segment.
+//
+// The slopes are the same as slopeTo()'s (horizontal is +0.0, vertical is
+// +infinity), so this finds the same segments as FastCollinearPoints.
+//
+// Segments are kept as pairs of point indices; segments() turns them into
+// LineSegments for code that wants those.
+public class CollinearPipeline {
+    private final int[] xs;
+    private final int[] ys;
+
+    // Segment i runs from point ends[2*i] to point ends[2*i+1].
+    private int[] ends = new int[8];
+    private int segmentCount;
+
+    // Scratch, one slot per point other than the origin.
+    private final double[] keys;
+    private final int[] order;
+
+    // Below this, the quicksort switches to insertion sort.
+    private static final int INSERTION_SORT_CUTOFF = 12;
+
+    // finds all line segments containing 4 or more of the points
+    // (xs[0], ys[0]), (xs[1], ys[1]), ...
+    public CollinearPipeline(int[] xs, int[] ys) {
+        if (xs == null || ys == null)
+            throw new IllegalArgumentException("Coordinates must not be null");
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException("xs and ys must be the same length");
+
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        checkDuplicates();
+
+        int n = xs.length;
+        keys = new double[Math.max(0, n - 1)];
+        order = new int[Math.max(0, n - 1)];
+
+        for (int p = 0; p < n; p++) {
+            findFrom(p);
+        }
+    }
+
+    private void checkDuplicates() {
+        long[] packed = new long[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            packed[i] = ((long) ys[i] << 32) | (xs[i] & 0xffffffffL);
+        }
+
+        Arrays.sort(packed);
+
+        for (int i = 1; i < packed.length; i++)
+            if (packed[i] == packed[i-1])
+                throw new IllegalArgumentException("Duplicate point!");
+    }
+
+    // Finds the segments for which p is the smallest point.
+    private void findFrom(int p) {
+        int m = 0;
+        for (int q = 0; q < xs.length; q++) {
+            if (q != p) {
+                keys[m] = slope(p, q);
+                order[m] = q;
+                ++m;
+            }
+        }
+
+        sort(0, m - 1);
+
+        int start = 0;
+        while (start < m) {
+            int end = start + 1;
+            while (end < m && keys[end] == keys[start])
+                ++end;
+
+            if (end - start >= 3)
+                checkRun(p, start, end);
+
+            start = end;
+        }
+    }
+
+    // order[lo..hi) all have the same slope from p.
+    private void checkRun(int p, int lo, int hi) {
+        int min = order[lo];
+        int max = order[lo];
+        for (int i = lo + 1; i < hi; i++) {
+            if (less(order[i], min))
+                min = order[i];
+            if (less(max, order[i]))
+                max = order[i];
+        }
+
+        if (less(p, min))
+            addSegment(p, max);
+    }
+
+    private void addSegment(int from, int to) {
+        if (2 * segmentCount == ends.length)
+            ends = Arrays.copyOf(ends, ends.length * 2);
+
+        ends[2 * segmentCount] = from;
+        ends[2 * segmentCount + 1] = to;
+        ++segmentCount;
+    }
+
+    // Point.slopeTo() on indices, for p != q.  Horizontal is always +0.0,
+    // never the -0.0 that 0.0 / negative would give.  The difference is
+    // worked out in doubles so it can't overflow.
+    private double slope(int p, int q) {
+        if (xs[p] == xs[q])
+            return Double.POSITIVE_INFINITY;
+        if (ys[p] == ys[q])
+            return 0.0;
+        return ((double) ys[q] - ys[p]) / ((double) xs[q] - xs[p]);
+    }
+
+    // Point.compareTo() on indices: by y, then by x.
+    private boolean less(int a, int b) {
+        return ys[a] < ys[b] || (ys[a] == ys[b] && xs[a] < xs[b]);
+    }
+
+    // 3-way quicksort of keys[lo..hi], moving order[] along with it.  Lots of
+    // equal keys is the whole point of the exercise, so they're gathered in
+    // the middle rather than split over both sides.
+    private void sort(int lo, int hi) {
+        while (hi - lo >= INSERTION_SORT_CUTOFF) {
+            // Median of three for the pivot, so sorted input isn't quadratic.
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < keys[lo]) swap(mid, lo);
+            if (keys[hi] < keys[lo]) swap(hi, lo);
+            if (keys[hi] < keys[mid]) swap(hi, mid);
+            double pivot = keys[mid];
+
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                if (keys[i] < pivot)
+                    swap(lt++, i++);
+                else if (keys[i] > pivot)
+                    swap(i, gt--);
+                else
+                    ++i;
+            }
+
+            // Recurse into the smaller side and loop on the bigger one, so
+            // the stack stays O(log n) deep.
+            if (lt - lo < hi - gt) {
+                sort(lo, lt - 1);
+                lo = gt + 1;
+            } else {
+                sort(gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && keys[j] < keys[j-1]; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        double k = keys[i];
+        keys[i] = keys[j];
+        keys[j] = k;
+
+        int o = order[i];
+        order[i] = order[j];
+        order[j] = o;
+    }
+
+    // the number of line segments
+    public int numberOfSegments() {
+        return segmentCount;
+    }
+
+    // the segments as point indices: segment i runs from point [2*i] to
+    // point [2*i+1]
+    public int[] endpoints() {
+        return Arrays.copyOf(ends, 2 * segmentCount);
+    }
+
+    // the line segments
+    public LineSegment[] segments() {
+        LineSegment[] result = new LineSegment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int from = ends[2 * i];
+            int to = ends[2 * i + 1];
+            result[i] = new LineSegment(new Point(xs[from], ys[from]), new Point(xs[to], ys[to]));
+        }
+        return result;
+    }
+}
@@ -1,6 +1,9 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class FastCollinearPoints {
     // Apparently we're allowed to use ArrayLists for this (and later)
@@ -17,30 +20,107 @@ public class FastCollinearPoints {
         int[][] runs = new int[points.length][2];
 
         for (Point p: points) {
-            Comparator<Point> c = p.slopeOrder();
+            findFrom(p, copy, slopes, runs, segments);
+        }
+    }
+
+    // finds all line segments containing 4 or more points, using parallelism
+    // threads
+    //
+    // The origins are independent of each other, so they're split into ranges
+    // and handed to a ForkJoinPool.  Each range gets its own scratch arrays,
+    // and each origin writes its segments to its own slot of found[], so no
+    // locking is needed.  Concatenating the slots in origin order at the end
+    // gives exactly what the single threaded constructor would have found, in
+    // the same order.
+    public FastCollinearPoints(Point[] points, int parallelism) {
+        validatePoints(points);
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be a positive number");
 
-            Arrays.sort(copy, c);
+        LineSegment[][] found = new LineSegment[points.length][];
 
-            for (int i = 0; i < slopes.length; i++) {
-                slopes[i] = p.slopeTo(copy[i]);
-            }
+        // A few ranges per thread so that a thread that finishes early can
+        // steal some of another's work.
+        int grain = Math.max(1, points.length / (parallelism * 8));
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new OriginTask(points, found, grain, 0, points.length));
+        } finally {
+            pool.shutdown();
+        }
+
+        for (LineSegment[] fromOrigin: found) {
+            segments.addAll(Arrays.asList(fromOrigin));
+        }
+    }
 
-            int dups = pickDups(slopes, runs);
+    // Finds the segments for which p is the smallest point and adds them to
+    // out.  copy, slopes and runs are scratch space, each as long as points.
+    private static void findFrom(Point p, Point[] copy, double[] slopes, int[][] runs,
+                                 List<LineSegment> out) {
+        Comparator<Point> c = p.slopeOrder();
 
-            for (int i = 0; i < dups; i++) {
+        Arrays.sort(copy, c);
 
-                if ((runs[i][1] - runs[i][0]) >= 2) {
-                    Point[] check = Arrays.copyOfRange(copy, runs[i][0], runs[i][1]+1);
+        for (int i = 0; i < slopes.length; i++) {
+            slopes[i] = p.slopeTo(copy[i]);
+        }
+
+        int dups = pickDups(slopes, runs);
+
+        for (int i = 0; i < dups; i++) {
 
-                    LineSegment seg = checkSmallest(p, check);
-                    if (seg != null)
-                        segments.add(seg);
+            if ((runs[i][1] - runs[i][0]) >= 2) {
+                Point[] check = Arrays.copyOfRange(copy, runs[i][0], runs[i][1]+1);
+
+                LineSegment seg = checkSmallest(p, check);
+                if (seg != null)
+                    out.add(seg);
+            }
+        }
+    }
+
+    // Runs the origins in [lo, hi), halving the range until it's no bigger
+    // than grain.
+    private static class OriginTask extends RecursiveAction {
+        private final Point[] points;
+        private final LineSegment[][] found;
+        private final int grain;
+        private final int lo;
+        private final int hi;
+
+        OriginTask(Point[] points, LineSegment[][] found, int grain, int lo, int hi) {
+            this.points = points;
+            this.found = found;
+            this.grain = grain;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo <= grain) {
+                Point[] copy = Arrays.copyOf(points, points.length);
+                double[] slopes = new double[points.length];
+                int[][] runs = new int[points.length][2];
+                ArrayList<LineSegment> out = new ArrayList<>();
+
+                for (int i = lo; i < hi; i++) {
+                    findFrom(points[i], copy, slopes, runs, out);
+                    found[i] = out.toArray(new LineSegment[0]);
+                    out.clear();
                 }
+                return;
             }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new OriginTask(points, found, grain, lo, mid),
+                      new OriginTask(points, found, grain, mid, hi));
         }
     }
 
-    private LineSegment checkSmallest(Point p, Point[] points) {
+    private static LineSegment checkSmallest(Point p, Point[] points) {
         Arrays.sort(points);
 
         if (p.compareTo(points[0]) < 0) {
@@ -99,7 +179,7 @@ public class FastCollinearPoints {
     }
 
     // TODO: Remove dup with BruteCollinearPoints.
-    private void validatePoints(Point[] points) {
+    static void validatePoints(Point[] points) {
         if (points == null)
             throw new IllegalArgumentException("Points must not be null");
 
@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+
+// Finds the same segments as FastCollinearPoints, but groups the points by
+// exact slope with a hash table instead of sorting by slopeTo().
+//
+// The slope from p to q is kept as the fraction dy/dx in lowest terms, with
+// the sign moved so that dx > 0 (or dx == 0 and dy == 1 for vertical).  Two
+// points are on the same line through p exactly when their fractions are
+// equal -- no doubles, so no worries about two different slopes rounding to
+// the same value once the coordinates get big.  The differences are done in
+// longs since dy and dx can overflow an int.
+//
+// For each origin p every other point goes into the table under its slope,
+// which keeps a count and the smallest and largest point seen.  A group of 3
+// or more whose smallest point is bigger than p is a segment from p to the
+// largest point (if p isn't the smallest, that segment gets reported from the
+// smaller origin).  That's O(n) expected per origin and O(n^2) overall,
+// against O(n^2 log n) for sorting.
+//
+// The table is plain arrays with linear probing, sized once for n keys.
+// Rather than clearing it between origins, each slot remembers which origin
+// ("generation") last wrote it, and a slot from an older generation counts as
+// empty.
+public class HashCollinearPoints {
+    private ArrayList<LineSegment> segments = new ArrayList<>();
+
+    private final int[] xs;
+    private final int[] ys;
+
+    // The table.
+    private final int mask;
+    private final long[] keyDy;
+    private final long[] keyDx;
+    private final int[] generation;
+    private final int[] count;
+    private final int[] min;
+    private final int[] max;
+
+    // Slots used for the current origin, in the order they were first used.
+    private final int[] used;
+    private int usedCount;
+
+    // finds all line segments containing 4 or more points
+    public HashCollinearPoints(Point[] points) {
+        FastCollinearPoints.validatePoints(points);
+
+        int n = points.length;
+        xs = new int[n];
+        ys = new int[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = points[i].x();
+            ys[i] = points[i].y();
+        }
+
+        // At most half full.
+        int capacity = Integer.highestOneBit(Math.max(1, n) * 2 - 1) << 1;
+        mask = capacity - 1;
+        keyDy = new long[capacity];
+        keyDx = new long[capacity];
+        generation = new int[capacity];
+        count = new int[capacity];
+        min = new int[capacity];
+        max = new int[capacity];
+        used = new int[n];
+
+        for (int p = 0; p < n; p++) {
+            // Generation 0 is what the slots start with, so it means empty.
+            int gen = p + 1;
+            usedCount = 0;
+
+            for (int q = 0; q < n; q++) {
+                if (q != p)
+                    add(gen, p, q);
+            }
+
+            for (int i = 0; i < usedCount; i++) {
+                int slot = used[i];
+                if (count[slot] >= 3 && less(p, min[slot]))
+                    segments.add(new LineSegment(points[p], points[max[slot]]));
+            }
+        }
+    }
+
+    // Put q in the group for its slope from p.
+    private void add(int gen, int p, int q) {
+        long dy = (long) ys[q] - ys[p];
+        long dx = (long) xs[q] - xs[p];
+
+        long g = gcd(Math.abs(dy), Math.abs(dx));
+        dy /= g;
+        dx /= g;
+        if (dx < 0 || (dx == 0 && dy < 0)) {
+            dy = -dy;
+            dx = -dx;
+        }
+
+        int slot = hash(dy, dx) & mask;
+        while (generation[slot] == gen) {
+            if (keyDy[slot] == dy && keyDx[slot] == dx) {
+                ++count[slot];
+                if (less(q, min[slot]))
+                    min[slot] = q;
+                if (less(max[slot], q))
+                    max[slot] = q;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        generation[slot] = gen;
+        keyDy[slot] = dy;
+        keyDx[slot] = dx;
+        count[slot] = 1;
+        min[slot] = q;
+        max[slot] = q;
+        used[usedCount++] = slot;
+    }
+
+    // Point.compareTo() on indices: by y, then by x.
+    private boolean less(int a, int b) {
+        return ys[a] < ys[b] || (ys[a] == ys[b] && xs[a] < xs[b]);
+    }
+
+    private static int hash(long dy, long dx) {
+        long h = dy * 0x9E3779B97F4A7C15L + dx;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Both non-negative and not both zero.
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    // the number of line segments
+    public int numberOfSegments() {
+        return segments.size();
+    }
+
+    // the line segments
+    public LineSegment[] segments() {
+        return segments.toArray(new LineSegment[0]);
+    }
+}
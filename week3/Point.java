@@ -47,6 +47,24 @@ public class Point implements Comparable<Point> {
         StdDraw.line(this.x, this.y, that.x, that.y);
     }
 
+    /**
+     * Returns the <em>x</em>-coordinate of this point.
+     *
+     * @return the <em>x</em>-coordinate of this point
+     */
+    int x() {
+        return x;
+    }
+
+    /**
+     * Returns the <em>y</em>-coordinate of this point.
+     *
+     * @return the <em>y</em>-coordinate of this point
+     */
+    int y() {
+        return y;
+    }
+
     /**
      * Returns the slope between this point and the specified point.
      * Formally, if the two points are (x0, y0) and (x1, y1), then the slope